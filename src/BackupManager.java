@@ -8,9 +8,6 @@ import java.util.Map;
 
 public class BackupManager {
 
-    private static final String EVENT_FILE_PATH = FileManager.EVENT_FILE_PATH;
-    private static final String RECURRENCE_FILE_PATH = FileManager.RECURRENT_FILE_PATH;
-    private static final String ADDITIONAL_FILE_PATH = FileManager.ADDITIONAL_FILE_PATH;
     //backup event file and recurrence file into single file
     private static final String EVENT_MARKER = "---EVENTS---";
     private static final String RECURRENCE_MARKER = "---RECURRENCES---";
@@ -27,18 +24,29 @@ public class BackupManager {
         Path targetFile = Paths.get(backupFilePath);
 
         try {
+            // the backup keeps the old three-section format so older versions can still restore it
+            List<Event> events = fm.getRepository().getEvents();
             List<String> combinedLines = new ArrayList<>();
 
-            // 1. Read and add Event data
+            // 1. Add Event data
             combinedLines.add(EVENT_MARKER);
-            combinedLines.addAll(Files.readAllLines(Paths.get(EVENT_FILE_PATH)));
+            combinedLines.add(FileManager.EVENT_HEADER);
+            for (Event e : events) {
+                combinedLines.add(e.toCsvString());
+            }
 
-            // 2. Read and add Recurrence data
+            // 2. Add Recurrence data
             combinedLines.add(RECURRENCE_MARKER);
-            combinedLines.addAll(Files.readAllLines(Paths.get(RECURRENCE_FILE_PATH)));
+            combinedLines.add(FileManager.RECURRENT_HEADER);
+            for (RecurrenceRule rule : fm.getRepository().getRules().values()) {
+                combinedLines.add(rule.toCsvR());
+            }
 
             combinedLines.add(ADDITIONAL_MARKER);
-            combinedLines.addAll(Files.readAllLines(Paths.get(ADDITIONAL_FILE_PATH)));
+            combinedLines.add(FileManager.ADDITIONAL_HEADER);
+            for (Event e : events) {
+                combinedLines.add(e.toAdditionalCsv());
+            }
             // 3. Save everything into the ONE single file
             Files.write(targetFile, combinedLines);
             
@@ -123,7 +131,7 @@ public class BackupManager {
             List<Event> eventsToSave = new ArrayList<>();
             for (String el : backupEventLines) {
                 // use constructor
-                Event e = new Event(el.split(","));
+                Event e = new Event(CsvScanner.splitLine(el));
                 if (e != null) eventsToSave.add(e);
             }
 
@@ -134,8 +142,8 @@ public class BackupManager {
             }
 
             // Save via FileManager so headers are included and internal lists updated
-            fm.saveEvents(eventsToSave);
-            fm.saveRecurrenceRule(rulesToSave);
+            // (events and rules in one commit, a crash cannot pair new events with old rules)
+            fm.saveCalendar(eventsToSave, rulesToSave);
 
             // Reload managers so they see the new data immediately
             fm.loadEvents();
@@ -0,0 +1,24 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base events plus their recurrence rules, as loaded in one go
+ * (from the CSV files or from the binary snapshot).
+ */
+public class CalendarData {
+    private final List<Event> events;
+    private final Map<Integer, RecurrenceRule> rules;
+
+    public CalendarData(List<Event> events, Map<Integer, RecurrenceRule> rules) {
+        this.events = events;
+        this.rules = rules;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public Map<Integer, RecurrenceRule> getRules() {
+        return rules;
+    }
+}
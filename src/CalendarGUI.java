@@ -24,7 +24,7 @@ public class CalendarGUI extends Application {
     private RecurrenceManager recurrenceManager;
     private EventSearcher searcher;
 
-    private List<Event> visibleEvents = new ArrayList<>();
+    private List<Occurrence> visibleEvents = new ArrayList<>();
 //    allEvents changed to visibleEvents (update of searcher which already loadEvents)
 
     private GridPane calendarGrid;
@@ -44,6 +44,15 @@ public class CalendarGUI extends Application {
     private Set<String> notifiedEventIds = new HashSet<>();
     private java.util.concurrent.ScheduledExecutorService scheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
 
+    // search bar queries run in the background, see SearchPipeline
+    private final SearchPipeline<List<Occurrence>> searchPipeline = new SearchPipeline<>();
+    // last search bar result, only touched on the search thread; a longer keyword refines it
+    private LocalDateTime lastSearchStart;
+    private LocalDateTime lastSearchEnd;
+    private long lastSearchVersion = -1;
+    private String lastSearchKeyword = "";
+    private List<Occurrence> lastSearchResult;
+
     @Override
     public void start(Stage primaryStage) {
 
@@ -117,11 +126,18 @@ public class CalendarGUI extends Application {
                 // fileManager.loadEvents() is safe-ish.
                 // Use searcher to include today's recurrent instances
                 LocalDateTime now = LocalDateTime.now();
-                // Check events for the long range to catch widely set reminders
-                List<Event> allEvents = searcher.searchByDateRange(now.minusMinutes(60), now.plusYears(1)); 
-                List<Reminder> reminders = ReminderFileReader.loadReminders("data/reminder.csv");
+                List<Reminder> reminders = new ReminderManager().getReminders();
                 
                 if (reminders != null && !reminders.isEmpty()) {
+                    // only the next instance of each event with a reminder can be due,
+                    // no need to expand a whole year of every series
+                    List<Occurrence> allEvents = new ArrayList<>();
+                    for (Reminder reminder : reminders) {
+                        Occurrence next = searcher.nextOccurrenceAfter(reminder.getEventId(), now.minusMinutes(1));
+                        if (next != null) {
+                            allEvents.add(next);
+                        }
+                    }
                     List<ReminderService.ReminderNotification> newReminders = ReminderService.getReminders(allEvents, reminders);
                     
                     if (!newReminders.isEmpty()) {
@@ -164,10 +180,27 @@ public class CalendarGUI extends Application {
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
         }
+        searchPipeline.shutdown();
+        // how often a redraw / statistics / search query was answered without searching
+        System.out.println(QueryCache.shared().summary());
+        // write whatever the background writer still holds before the JVM exits
+        PersistenceService.shared().flush();
+        // binary snapshot for a fast first paint on the next start
+        if (fileManager != null) {
+            fileManager.writeSnapshot();
+        }
         super.stop();
     }
 
     private void refreshVisibleEvents(){
+        LocalDateTime[] range = visibleRange();
+        String keyword = searchBar == null ? "" : searchBar.getText();
+        visibleEvents = searcher.search(range[0], range[1], keyword, "General", "", "");
+
+    }
+
+    // {start, end} of what the current view shows
+    private LocalDateTime[] visibleRange(){
         LocalDateTime start ;
         LocalDateTime end;
         String view = viewSwitcher.getValue();
@@ -197,12 +230,41 @@ public class CalendarGUI extends Application {
             start = gridStart.atStartOfDay();
             end = gridEnd.atStartOfDay();
         }
-        visibleEvents = searcher.searchByDateRange(start, end);
+        return new LocalDateTime[]{start, end};
+    }
 
-        if (searchBar != null && ! searchBar.getText().isEmpty()){
-            visibleEvents = searcher.advanceFilter(visibleEvents, searchBar.getText(), "General", "", "");
-        }
+    // search bar: runs in the background, the view is redrawn with the result once it is ready
+    private void scheduleSearch(){
+        if (searcher == null) return;
+        LocalDateTime[] range = visibleRange();
+        String keyword = searchBar.getText().toLowerCase().trim();
+        searchPipeline.submit(superseded -> searchVisible(range[0], range[1], keyword, superseded), result -> {
+            visibleEvents = result;
+            renderCalendar();
+        });
+    }
 
+    // runs on the search thread
+    private List<Occurrence> searchVisible(LocalDateTime start, LocalDateTime end, String keyword, java.util.function.BooleanSupplier superseded){
+        long version = fileManager.getRepository().snapshot().getVersion();
+        List<Occurrence> found;
+        // same window and data, and the new keyword contains the old one: only the old matches can match
+        if (lastSearchResult != null && version == lastSearchVersion && start.equals(lastSearchStart) && end.equals(lastSearchEnd)
+                && !lastSearchKeyword.isEmpty() && keyword.contains(lastSearchKeyword)){
+            found = lastSearchResult;
+        } else {
+            found = searcher.searchByDateRange(start, end);
+        }
+        if (superseded.getAsBoolean()) return null;
+        if (!keyword.isEmpty()){
+            found = searcher.advanceFilter(found, keyword, "General", "", "");
+        }
+        lastSearchStart = start;
+        lastSearchEnd = end;
+        lastSearchVersion = version;
+        lastSearchKeyword = keyword;
+        lastSearchResult = found;
+        return found;
     }
 
 
@@ -336,7 +398,7 @@ public class CalendarGUI extends Application {
         searchBar.setPromptText("Search keywords...");
         searchBar.setPrefWidth(200);
         searchBar.setStyle("-fx-background-radius: 15px; -fx-padding: 5 10 5 10;"); // Rounded pill
-        searchBar.textProperty().addListener((obs, oldVal, newVal) -> drawCalendar());
+        searchBar.textProperty().addListener((obs, oldVal, newVal) -> scheduleSearch());
 
         Button advancedSearchBtn = new Button("Advanced Search");
         advancedSearchBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: #3498db; -fx-underline: true;");
@@ -589,6 +651,8 @@ public class CalendarGUI extends Application {
 
     private void drawCalendar() {
         if (searcher == null) return; // Safety check if data load failed
+        // this redraw is newer than any search still running
+        searchPipeline.cancel();
         
         try {
             refreshVisibleEvents();
@@ -597,6 +661,11 @@ public class CalendarGUI extends Application {
              e.printStackTrace();
              return;
         }
+        renderCalendar();
+    }
+
+    // draws visibleEvents as they are, without searching again
+    private void renderCalendar() {
 
         // Ensure Home View is Active
         // If center is not homeCenterLayout? 
@@ -859,7 +928,7 @@ public class CalendarGUI extends Application {
         }
         eventListView.getItems().add(headerPrefix + date.format(headerFmt));
         
-        for (Event event : visibleEvents) {
+        for (Occurrence event : visibleEvents) {
             if (event.getStartDateTime().toLocalDate().equals(date)) {
                 // POINTER:Time|Category|Title|Desc|ID
                 String packed = String.format("POINTER:%s|%s|%s|%s|%s",
@@ -932,7 +1001,7 @@ public class CalendarGUI extends Application {
             cell.getChildren().add(header);
         }
 
-        for (Event event : visibleEvents) {
+        for (Occurrence event : visibleEvents) {
             if (event.getStartDateTime().toLocalDate().equals(date)) {
                 Label eventLabel = new Label(event.getTitle());
                 
@@ -964,7 +1033,7 @@ public class CalendarGUI extends Application {
         return cell;
     }
 
-    public void handleEventInteraction(Event event){
+    public void handleEventInteraction(Occurrence event){
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Event details");
         alert.setHeaderText(event.getTitle());
@@ -979,15 +1048,52 @@ public class CalendarGUI extends Application {
         Optional<ButtonType> result = alert.showAndWait();
         if(result.isPresent()){
             EventDialog eventManager = new EventDialog(fileManager, recurrenceManager, this::drawCalendar);
+            if (result.get() != deleteBtn && result.get() != editBtn){
+                return;
+            }
+            // a recurring event can be changed for this one instance only
+            boolean onlyThisOne = false;
+            if (fileManager.getRepository().getRules().containsKey(event.getEventId())){
+                Optional<Boolean> scope = askRecurringScope(result.get() == deleteBtn ? "Delete" : "Edit");
+                if (scope.isEmpty()) return;
+                onlyThisOne = scope.get();
+            }
             if (result.get() == deleteBtn){
-                eventManager.delete(event);
+                if (onlyThisOne) {
+                    eventManager.deleteInstance(event);
+                } else {
+                    eventManager.delete(event.getBase());
+                }
 
-            } else if (result.get() == editBtn){
-                eventManager.edit(event);
+            } else if (onlyThisOne){
+                eventManager.editInstance(event);
+            } else {
+                // the stored event: for a series that is its first instance, not the one clicked,
+                // and never the fields of a moved or retitled instance (its Occurrence carries those)
+                Event stored = fileManager.getRepository().snapshot().getEvent(event.getEventId());
+                eventManager.edit(stored != null ? stored : event.toEvent());
             }
         }
     }
 
+    // true = this occurrence only, false = the whole series, empty = cancelled
+    private Optional<Boolean> askRecurringScope(String action){
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle(action + " recurring event");
+        alert.setHeaderText("This is a recurring event.");
+        alert.setContentText(action + " only this occurrence, or every event in the series?");
+
+        ButtonType thisBtn = new ButtonType("This occurrence");
+        ButtonType seriesBtn = new ButtonType("Whole series");
+        alert.getButtonTypes().setAll(thisBtn, seriesBtn, ButtonType.CANCEL);
+
+        Optional<ButtonType> choice = alert.showAndWait();
+        if (choice.isEmpty() || choice.get() == ButtonType.CANCEL){
+            return Optional.empty();
+        }
+        return Optional.of(choice.get() == thisBtn);
+    }
+
         private void handleBackup() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export Single-File Backup");
@@ -6,7 +6,7 @@ import java.util.Locale;
 public class CalendarPrinter {
 
     // ---------------- List View (Generic for Day/Week/Month) ----------------
-    public static void printList(List<Event> events, LocalDate start, LocalDate end, String title) {
+    public static void printList(List<Occurrence> events, LocalDate start, LocalDate end, String title) {
         System.out.println("\n=== " + title + " ===");
         LocalDate current = start;
         while (!current.isAfter(end)) {
@@ -16,7 +16,7 @@ public class CalendarPrinter {
             System.out.print(dayName + " " + dayNum + ": ");
             
             List<String> eventStrings = new ArrayList<>();
-            for (Event e : events) {
+            for (Occurrence e : events) {
                 // Check if event occurs on this day
                 // Handle recurrences already expanded in 'events' or single events
                 // The 'events' list passed here should ideally be the searched/expanded list for the range.
@@ -36,7 +36,7 @@ public class CalendarPrinter {
     }
 
     // ---------------- Calendar Month View ----------------
-    public static void printMonthCalendar(List<Event> events, YearMonth yearMonth) {
+    public static void printMonthCalendar(List<Occurrence> events, YearMonth yearMonth) {
         String monthName = yearMonth.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
         System.out.println("\n" + monthName + " " + yearMonth.getYear());
         
@@ -78,7 +78,7 @@ public class CalendarPrinter {
 
         // List events clearly below
         System.out.println("* = day with events");
-        for (Event e : events) {
+        for (Occurrence e : events) {
             LocalDate ed = e.getStartDateTime().toLocalDate();
             // Filter strictly for this month (though passed list might be larger)
              if (ed.getYear() == yearMonth.getYear() && ed.getMonth() == yearMonth.getMonth()) {
@@ -88,7 +88,7 @@ public class CalendarPrinter {
     }
 
     // ---------------- Calendar Week View ----------------
-    public static void printWeekCalendar(List<Event> events, LocalDate weekStart) {
+    public static void printWeekCalendar(List<Occurrence> events, LocalDate weekStart) {
         LocalDate weekEnd = weekStart.plusDays(6);
         System.out.println("\nWEEK VIEW (" + weekStart + " to " + weekEnd + ")");
 
@@ -106,7 +106,7 @@ public class CalendarPrinter {
         System.out.println("\n\n* = day with events");
 
         // List details
-        for (Event e : events) {
+        for (Occurrence e : events) {
             LocalDate ed = e.getStartDateTime().toLocalDate();
             if (!ed.isBefore(weekStart) && !ed.isAfter(weekEnd)) {
                 System.out.println("* " + ed.getDayOfMonth() + ": " + e.getTitle() + " (" + e.getStartDateTime().toLocalTime() + ")");
@@ -114,7 +114,7 @@ public class CalendarPrinter {
         }
     }
 
-    private static boolean isEventOnDate(Event e, LocalDate date) {
+    private static boolean isEventOnDate(Occurrence e, LocalDate date) {
         LocalDate start = e.getStartDateTime().toLocalDate();
         LocalDate end = e.getEndDateTime().toLocalDate();
         // Simple case: starts on date.
@@ -0,0 +1,406 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Immutable view of the calendar at one version, published by EventRepository.
+ *
+ * A reader takes one snapshot and works on it without locks: later edits never
+ * change it, they build a new snapshot (withEvent, withoutRule, ...) that the
+ * repository swaps in. Only the overlay and the rules are copied on an edit,
+ * they are small (the overlay holds the changes since the last compaction, see
+ * compacted()); the segments read from disk are shared by every snapshot of the same files.
+ */
+public final class CalendarSnapshot {
+    private final long version;
+    private final Map<String, PartitionedStore.SegmentInfo> manifest;
+    private final Map<Integer, String> index;
+    private final SegmentCache segments;
+    // journal on top of the segments: eventId -> newest version, null value = deleted
+    private final Map<Integer, Event> overlay;
+    private final Map<Integer, RecurrenceRule> rules;
+    // exceptions to single instances of a series, by InstanceOverride.key()
+    private final Map<Long, InstanceOverride> overrides;
+    private final int maxEventId;
+    // built on the first getEvents(); two threads may both build it, the result is the same
+    private volatile List<Event> allEvents;
+    // index of the overlay events, built on the first query of this version (the overlay is small)
+    private volatile IntervalIndex overlayIndex;
+
+    /**
+     * Month segments as stored on disk, read on first use.
+     * Shared by all snapshots until the files are reloaded.
+     */
+    static final class SegmentCache {
+        private final PartitionedStore store;
+        private final Map<String, CalendarData> loaded = new ConcurrentHashMap<>();
+        // built on the first query of a month segment, segments never change once read
+        private final Map<String, IntervalIndex> indexes = new ConcurrentHashMap<>();
+        // segments kept in their pre-compaction state, no longer what the files hold
+        private final Set<String> replaced = ConcurrentHashMap.newKeySet();
+
+        SegmentCache(PartitionedStore store) {
+            this.store = store;
+        }
+
+        CalendarData get(String key) {
+            return loaded.computeIfAbsent(key, store::readSegment);
+        }
+
+        IntervalIndex index(String key) {
+            return indexes.computeIfAbsent(key, k -> new IntervalIndex(get(k).getEvents()));
+        }
+
+        // see EventRepository.compact()
+        void pin(String key, CalendarData oldContent) {
+            loaded.putIfAbsent(key, oldContent);
+            replaced.add(key);
+        }
+
+        // segments read so far (live view), nothing is loaded by looking
+        Map<String, CalendarData> loaded() {
+            return Collections.unmodifiableMap(loaded);
+        }
+
+        // a cache for the files after a compaction: what was read is kept, except the rewritten segments
+        SegmentCache without(Set<String> rewritten) {
+            SegmentCache next = new SegmentCache(store);
+            for (Map.Entry<String, CalendarData> segment : loaded.entrySet()) {
+                if (!rewritten.contains(segment.getKey())) {
+                    next.loaded.put(segment.getKey(), segment.getValue());
+                    IntervalIndex index = indexes.get(segment.getKey());
+                    if (index != null) {
+                        next.indexes.put(segment.getKey(), index);
+                    }
+                }
+            }
+            for (String key : replaced) {
+                if (!rewritten.contains(key)) {
+                    next.replaced.add(key);
+                }
+            }
+            return next;
+        }
+
+        Map<String, CalendarData> onDisk() {
+            Map<String, CalendarData> copy = new HashMap<>(loaded);
+            copy.keySet().removeAll(replaced);
+            return copy;
+        }
+    }
+
+    CalendarSnapshot(long version, Map<String, PartitionedStore.SegmentInfo> manifest, Map<Integer, String> index,
+                     SegmentCache segments, Map<Integer, Event> overlay, Map<Integer, RecurrenceRule> rules,
+                     Map<Long, InstanceOverride> overrides, int maxEventId) {
+        this.version = version;
+        this.manifest = manifest;
+        this.index = index;
+        this.segments = segments;
+        this.overlay = overlay;
+        this.rules = rules;
+        this.overrides = overrides;
+        this.maxEventId = maxEventId;
+    }
+
+    // increases with every change, two snapshots with the same version hold the same data
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return every base event (read-only). Reads all segments, prefer singleEventsBetween().
+     */
+    public List<Event> getEvents() {
+        List<Event> events = allEvents;
+        if (events == null) {
+            List<Event> built = new ArrayList<>();
+            for (String key : manifest.keySet()) {
+                addVisible(built, segments.get(key));
+            }
+            addOverlay(built);
+            events = Collections.unmodifiableList(built);
+            allEvents = events;
+        }
+        return events;
+    }
+
+    /**
+     * @return occurrences of the events without a rule that overlap [start, end), in start order.
+     *         Only the months overlapping the window are read, each through its IntervalIndex.
+     */
+    public List<Occurrence> singleEventsBetween(LocalDateTime start, LocalDateTime end) {
+        long fromMinute = Occurrence.toEpochMinute(start);
+        long toMinute = Occurrence.toEpochMinute(end);
+        Predicate<Event> visibleSingle = visibleSingle();
+
+        // month segments hold disjoint start months and the manifest is sorted by key,
+        // so the per-segment results are already in start order one after the other
+        List<Occurrence> stored = new ArrayList<>();
+        for (PartitionedStore.SegmentInfo info : manifest.values()) {
+            if (!info.getKey().equals(PartitionedStore.RECURRING) && info.overlaps(start, end)) {
+                segments.index(info.getKey()).query(fromMinute, toMinute, visibleSingle, stored);
+            }
+        }
+        return Occurrence.merge(stored, changedSingles(fromMinute, toMinute));
+    }
+
+    /**
+     * @return occurrences of the events without a rule that end after start, in start order,
+     *         with no end. A month segment is only read once the iteration reaches it.
+     */
+    public Iterator<Occurrence> singleEventsFrom(LocalDateTime start) {
+        long fromMinute = Occurrence.toEpochMinute(start);
+        Predicate<Event> visibleSingle = visibleSingle();
+        Iterator<PartitionedStore.SegmentInfo> months = manifest.values().iterator();
+        Iterator<Occurrence> stored = new Iterator<>() {
+            private List<Occurrence> buffer = List.of();
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position >= buffer.size() && months.hasNext()) {
+                    PartitionedStore.SegmentInfo info = months.next();
+                    if (!info.getKey().equals(PartitionedStore.RECURRING) && info.overlaps(start, LocalDateTime.MAX)) {
+                        buffer = new ArrayList<>();
+                        position = 0;
+                        segments.index(info.getKey()).query(fromMinute, Long.MAX_VALUE, visibleSingle, buffer);
+                    }
+                }
+                return position < buffer.size();
+            }
+
+            @Override
+            public Occurrence next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return buffer.get(position++);
+            }
+        };
+        return new OccurrenceStream(List.of(stored, changedSingles(fromMinute, Long.MAX_VALUE).iterator()));
+    }
+
+    /**
+     * @return the base event with this id, null if there is none. Reads at most its own segment.
+     */
+    public Event getEvent(int eventId) {
+        if (overlay.containsKey(eventId)) {
+            return overlay.get(eventId);
+        }
+        String key = index.get(eventId);
+        if (key == null) {
+            return null;
+        }
+        for (Event e : segments.get(key).getEvents()) {
+            if (e.getEventId() == eventId) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return every base event that has a rule (read-only)
+     */
+    public List<Event> recurringEvents() {
+        List<Event> events = new ArrayList<>();
+        for (Event e : segments.get(PartitionedStore.RECURRING).getEvents()) {
+            if (!overlay.containsKey(e.getEventId()) && rules.containsKey(e.getEventId())) {
+                events.add(e);
+            }
+        }
+        // a rule added since the last compaction can belong to an event still stored in its month
+        Map<String, Set<Integer>> inMonths = new TreeMap<>();
+        for (int id : rules.keySet()) {
+            String key = index.get(id);
+            if (key != null && !key.equals(PartitionedStore.RECURRING) && !overlay.containsKey(id)) {
+                inMonths.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+            }
+        }
+        for (Map.Entry<String, Set<Integer>> month : inMonths.entrySet()) {
+            for (Event e : segments.get(month.getKey()).getEvents()) {
+                if (month.getValue().contains(e.getEventId())) {
+                    events.add(e);
+                }
+            }
+        }
+        for (Event e : overlay.values()) {
+            if (e != null && rules.containsKey(e.getEventId())) {
+                events.add(e);
+            }
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @return recurrence rules keyed by eventId (read-only)
+     */
+    public Map<Integer, RecurrenceRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return instance overrides keyed by InstanceOverride.key() (read-only)
+     */
+    public Map<Long, InstanceOverride> getOverrides() {
+        return overrides;
+    }
+
+    // highest eventId stored or journaled
+    public int getMaxEventId() {
+        return maxEventId;
+    }
+
+    SegmentCache getSegments() {
+        return segments;
+    }
+
+    // events changed since the last compaction, deleted ones left out
+    List<Event> overlayEvents() {
+        List<Event> events = new ArrayList<>(overlay.size());
+        for (Event e : overlay.values()) {
+            if (e != null) {
+                events.add(e);
+            }
+        }
+        return events;
+    }
+
+    // ---- edits: each returns the next version, this one is left untouched ----
+
+    // create or update; an updated event moves to the end, same as the journal replay
+    CalendarSnapshot withEvent(Event event) {
+        Map<Integer, Event> next = new LinkedHashMap<>(overlay);
+        next.remove(event.getEventId());
+        next.put(event.getEventId(), event);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, Collections.unmodifiableMap(next),
+                rules, overrides, Math.max(maxEventId, event.getEventId()));
+    }
+
+    CalendarSnapshot withoutEvent(int eventId) {
+        Map<Integer, Event> next = new LinkedHashMap<>(overlay);
+        next.remove(eventId);
+        next.put(eventId, null);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, Collections.unmodifiableMap(next),
+                rules, overrides, maxEventId);
+    }
+
+    CalendarSnapshot withRule(RecurrenceRule rule) {
+        Map<Integer, RecurrenceRule> next = new HashMap<>(rules);
+        next.put(rule.getEventId(), rule);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, overlay,
+                Collections.unmodifiableMap(next), overrides, maxEventId);
+    }
+
+    CalendarSnapshot withoutRule(int eventId) {
+        Map<Integer, RecurrenceRule> next = new HashMap<>(rules);
+        next.remove(eventId);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, overlay,
+                Collections.unmodifiableMap(next), overrides, maxEventId);
+    }
+
+    /**
+     * The next version after a journal compaction wrote 'folded' (eventId -> event,
+     * null = deleted) into the segments 'rewritten'. The overlay drops every entry the
+     * files now hold, so it starts small again; entries changed after the compaction
+     * read the journal stay. Rewritten segments are read again from the new files.
+     */
+    CalendarSnapshot compacted(Map<String, PartitionedStore.SegmentInfo> newManifest, Map<Integer, String> newIndex,
+                               Set<String> rewritten, Map<Integer, Event> folded) {
+        Map<Integer, Event> next = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Event> entry : overlay.entrySet()) {
+            if (!folded.containsKey(entry.getKey()) || !sameEvent(entry.getValue(), folded.get(entry.getKey()))) {
+                next.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new CalendarSnapshot(version + 1, newManifest, newIndex, segments.without(rewritten),
+                Collections.unmodifiableMap(next), rules, overrides, maxEventId);
+    }
+
+    // the journal copy of an event is a new object, compare what is stored
+    private static boolean sameEvent(Event a, Event b) {
+        return a == null || b == null ? a == b : a.toCsvString().equals(b.toCsvString());
+    }
+
+    CalendarSnapshot withOverride(InstanceOverride override) {
+        Map<Long, InstanceOverride> next = new HashMap<>(overrides);
+        next.put(override.getKey(), override);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, overlay, rules,
+                Collections.unmodifiableMap(next), maxEventId);
+    }
+
+    // every override of one series, used when the series is deleted
+    CalendarSnapshot withoutOverrides(int eventId) {
+        Map<Long, InstanceOverride> next = new HashMap<>(overrides);
+        next.values().removeIf(o -> o.getEventId() == eventId);
+        return new CalendarSnapshot(version + 1, manifest, index, segments, overlay, rules,
+                Collections.unmodifiableMap(next), maxEventId);
+    }
+
+    // events stored without a rule and not replaced by the journal
+    private Predicate<Event> visibleSingle() {
+        return e -> !overlay.containsKey(e.getEventId()) && !rules.containsKey(e.getEventId());
+    }
+
+    // single events changed since the last compaction, sorted by start
+    private List<Occurrence> changedSingles(long fromMinute, long toMinute) {
+        Predicate<Event> visibleSingle = visibleSingle();
+        List<Occurrence> changed = new ArrayList<>();
+        overlayIndex().query(fromMinute, toMinute, e -> !rules.containsKey(e.getEventId()), changed);
+        // a rule removed since the last compaction leaves its event in the recurring segment
+        boolean unsorted = false;
+        for (Event e : segments.get(PartitionedStore.RECURRING).getEvents()) {
+            if (visibleSingle.test(e)) {
+                Occurrence single = Occurrence.of(e);
+                if (single.overlaps(fromMinute, toMinute)) {
+                    changed.add(single);
+                    unsorted = true;
+                }
+            }
+        }
+        if (unsorted) {
+            changed.sort(Comparator.comparingLong(Occurrence::getStartMinute));
+        }
+        return changed;
+    }
+
+    private IntervalIndex overlayIndex() {
+        IntervalIndex built = overlayIndex;
+        if (built == null) {
+            List<Event> changed = new ArrayList<>();
+            addOverlay(changed);
+            built = changed.isEmpty() ? IntervalIndex.EMPTY : new IntervalIndex(changed);
+            overlayIndex = built;
+        }
+        return built;
+    }
+
+    private void addVisible(List<Event> out, CalendarData segment) {
+        for (Event e : segment.getEvents()) {
+            // replaced or deleted by the journal
+            if (!overlay.containsKey(e.getEventId())) {
+                out.add(e);
+            }
+        }
+    }
+
+    private void addOverlay(List<Event> out) {
+        for (Event e : overlay.values()) {
+            if (e != null) {
+                out.add(e);
+            }
+        }
+    }
+}
@@ -1,4 +1,6 @@
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class ConflictDetector {
@@ -11,6 +13,22 @@ public class ConflictDetector {
         this.searcher = new EventSearcher(fileManager, recurrenceManager);
     }
 
+    /**
+     * One instance of the candidate overlapping one existing instance.
+     */
+    public static final class Conflict {
+        private final Occurrence candidate;
+        private final Occurrence existing;
+
+        Conflict(Occurrence candidate, Occurrence existing) {
+            this.candidate = candidate;
+            this.existing = existing;
+        }
+
+        public Occurrence getCandidate() { return candidate; }
+        public Occurrence getExisting() { return existing; }
+    }
+
     /**
      * Checks if the given event (recurrence or single) conflicts with existing events.
      * @param candidate The event to check.
@@ -18,39 +36,90 @@ public class ConflictDetector {
      * @return true if a conflict exists.
      */
     public boolean check(Event candidate, RecurrenceRule rule) {
-        // 1. If non-recurrent, just check the single range
-        if (rule == null || rule.getRecurrentInterval().equals("Do not repeat")) {
-            return checkRange(candidate.getStartDateTime(), candidate.getEndDateTime(), candidate.getEventId());
+        return !findConflicts(candidate, rule).isEmpty();
+    }
+
+    /**
+     * Every pair of a candidate instance and an existing instance that overlap, in the order
+     * the later of the two starts. Instances of the candidate's own eventId (edit mode) are ignored.
+     * @param rule The recurrence rule (can be null for non-recurrent).
+     */
+    public List<Conflict> findConflicts(Event candidate, RecurrenceRule rule) {
+        List<Occurrence> instances;
+        if (rule == null) {
+            instances = List.of(Occurrence.of(candidate));
+        } else {
+            // We limit to 1 year to avoid performance freeze on "Daily forever"
+            LocalDateTime searchStart = candidate.getStartDateTime();
+            instances = recurrenceManager.generateOccurrences(candidate, rule, searchStart, searchStart.plusYears(1));
         }
+        if (instances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // the calendar as one stream over the whole horizon, from the first instance on
+        return sweep(instances, searcher.streamFrom(instances.get(0).getStartDateTime()), candidate.getEventId());
+    }
+
+    /**
+     * The sweep behind findConflicts(): both sides are read once in start order and each
+     * instance is compared only with the other side's instances still running when it starts.
+     * @param instances the candidate's instances, in start order
+     * @param existing the calendar in start order; it may start with instances that began
+     *                 before the first candidate instance
+     * @param ignoreId eventId of the candidate (edit mode), its stored instances are skipped
+     */
+    static List<Conflict> sweep(List<Occurrence> instances, Iterator<Occurrence> existing, int ignoreId) {
+        List<Conflict> conflicts = new ArrayList<>();
+        if (instances.isEmpty()) {
+            return conflicts;
+        }
+        long horizonEnd = Long.MIN_VALUE;
+        for (Occurrence inst : instances) {
+            horizonEnd = Math.max(horizonEnd, inst.getEndMinute());
+        }
+
+        Occurrence nextExisting = nextOther(existing, ignoreId, horizonEnd);
+        int nextCandidate = 0;
+        List<Occurrence> activeCandidates = new ArrayList<>();
+        List<Occurrence> activeExisting = new ArrayList<>();
 
-        // 2. If recurrent, check instances for up to 1 year or rule limit
-        // We limit to 1 year or ~100 instances to avoid performance freeze on "Daily forever"
-        LocalDateTime searchStart = candidate.getStartDateTime();
-        LocalDateTime searchEnd = searchStart.plusYears(1); 
-        
-        List<Event> instances = recurrenceManager.generateOccurrences(candidate, rule, searchStart, searchEnd);
-        
-        for (Event inst : instances) {
-            if (checkRange(inst.getStartDateTime(), inst.getEndDateTime(), candidate.getEventId())) {
-                return true;
+        while (nextCandidate < instances.size() || (nextExisting != null && !activeCandidates.isEmpty())) {
+            boolean takeCandidate = nextExisting == null || (nextCandidate < instances.size()
+                    && instances.get(nextCandidate).getStartMinute() <= nextExisting.getStartMinute());
+            if (takeCandidate) {
+                Occurrence inst = instances.get(nextCandidate++);
+                evictEnded(activeExisting, inst.getStartMinute());
+                for (Occurrence e : activeExisting) {
+                    if (inst.overlaps(e.getStartMinute(), e.getEndMinute())) conflicts.add(new Conflict(inst, e));
+                }
+                activeCandidates.add(inst);
+            } else {
+                Occurrence e = nextExisting;
+                nextExisting = nextOther(existing, ignoreId, horizonEnd);
+                evictEnded(activeCandidates, e.getStartMinute());
+                for (Occurrence inst : activeCandidates) {
+                    if (inst.overlaps(e.getStartMinute(), e.getEndMinute())) conflicts.add(new Conflict(inst, e));
+                }
+                activeExisting.add(e);
             }
         }
-        return false;
+        return conflicts;
     }
 
-    private boolean checkRange(LocalDateTime start, LocalDateTime end, int ignoreId) {
-        // Search for potential collisions in this time window
-        List<Event> found = searcher.searchByDateRange(start, end);
-        
-        for (Event e : found) {
+    // next existing instance that can still meet a candidate, null past the horizon
+    private static Occurrence nextOther(Iterator<Occurrence> stream, int ignoreId, long horizonEnd) {
+        while (stream.hasNext()) {
+            Occurrence e = stream.next();
+            // everything after this starts too late
+            if (e.getStartMinute() >= horizonEnd) return null;
             // Ignore self (for edit mode)
-            if (e.getEventId() == ignoreId) continue;
-
-            // Check overlap: (StartA < EndB) and (StartB < EndA)
-            if (start.isBefore(e.getEndDateTime()) && e.getStartDateTime().isBefore(end)) {
-                return true;
-            }
+            if (e.getEventId() != ignoreId) return e;
         }
-        return false;
+        return null;
+    }
+
+    // an instance that ended by 'minute' cannot overlap anything starting at or after it
+    private static void evictEnded(List<Occurrence> active, long minute) {
+        active.removeIf(o -> o.getEndMinute() <= minute);
     }
 }
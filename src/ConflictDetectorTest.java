@@ -0,0 +1,93 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// checks for the conflict sweep behind ConflictDetector.findConflicts(), run with: java ConflictDetectorTest
+public class ConflictDetectorTest {
+
+    private static final RecurrenceManager manager = new RecurrenceManager();
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 1, 10, 0, 0);
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+
+        // the existing meeting started an hour before the candidate and still runs
+        Event teamMeeting = event(1, "Team Meeting", 9, 0, 11, 0);
+        Event clientCall = event(2, "Client Call", 10, 30, 12, 0);
+        check("existing instance starting before the candidate",
+                pairs(single(clientCall), List.of(teamMeeting), -1), List.of("2025-01-10T10:30 Team Meeting"));
+
+        // same for a daily series: only its first instance meets the meeting
+        RecurrenceRule daily = new RecurrenceRule(2, "1d", 3, null);
+        check("existing instance starting before the first instance of a series",
+                pairs(manager.generateOccurrences(clientCall, daily, DAY, DAY.plusDays(7)), List.of(teamMeeting), -1),
+                List.of("2025-01-10T10:30 Team Meeting"));
+
+        // one ends exactly when the other starts: no overlap on either side
+        Event before = event(3, "Breakfast", 9, 0, 10, 0);
+        Event after = event(4, "Lunch", 11, 0, 12, 0);
+        Event slot = event(5, "Slot", 10, 0, 11, 0);
+        check("back-to-back instances do not conflict", pairs(single(slot), List.of(before, after), -1), List.of());
+
+        // edit mode: the stored copy of the event being edited is not a conflict, other events still are
+        Event stored = event(6, "Gym", 18, 0, 19, 0);
+        Event edited = event(6, "Gym", 18, 30, 19, 30);
+        Event dinner = event(7, "Dinner", 19, 0, 20, 0);
+        check("own eventId is ignored in edit mode", pairs(single(edited), List.of(stored, dinner), 6), List.of("2025-01-10T18:30 Dinner"));
+
+        // a series hitting the same existing event on two different days
+        Event standup = event(8, "Standup", 9, 30, 9, 45);
+        RecurrenceRule weekdays = new RecurrenceRule(8, "1d", 5, null);
+        Event review = event(9, "Review", 9, 0, 10, 0);
+        RecurrenceRule everyOtherDay = new RecurrenceRule(9, "2d", 2, null);
+        List<Occurrence> reviews = manager.generateOccurrences(review, everyOtherDay, DAY, DAY.plusDays(7));
+        check("every colliding pair of a series is returned",
+                pairs(manager.generateOccurrences(standup, weekdays, DAY, DAY.plusDays(7)), occurrences(reviews), -1),
+                List.of("2025-01-10T09:30 Review", "2025-01-12T09:30 Review"));
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed.");
+            System.exit(1);
+        }
+        System.out.println("All conflict checks passed.");
+    }
+
+    private static Event event(int id, String title, int startHour, int startMinute, int endHour, int endMinute) {
+        return new Event(id, title, "", DAY.withHour(startHour).withMinute(startMinute),
+                DAY.withHour(endHour).withMinute(endMinute), "", "General", "");
+    }
+
+    private static List<Occurrence> single(Event event) {
+        return List.of(Occurrence.of(event));
+    }
+
+    private static List<Event> occurrences(List<Occurrence> instances) {
+        List<Event> events = new ArrayList<>();
+        for (Occurrence o : instances) {
+            events.add(new Event(o.getEventId(), o.getTitle(), "", o.getStartDateTime(), o.getEndDateTime(), "", "General", ""));
+        }
+        return events;
+    }
+
+    // "candidate start + existing title" for every pair found
+    private static List<String> pairs(List<Occurrence> candidate, List<Event> existing, int ignoreId) {
+        List<Occurrence> calendar = new ArrayList<>();
+        for (Event e : existing) {
+            calendar.add(Occurrence.of(e));
+        }
+        List<String> found = new ArrayList<>();
+        for (ConflictDetector.Conflict conflict : ConflictDetector.sweep(candidate, calendar.iterator(), ignoreId)) {
+            found.add(conflict.getCandidate().getStartDateTime() + " " + conflict.getExisting().getTitle());
+        }
+        return found;
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        if (actual.equals(expected)) {
+            System.out.println("PASS " + name);
+        } else {
+            failures++;
+            System.out.println("FAIL " + name + ": expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming CSV reader used for the store segments and friends.
+ *
+ * The whole file is pulled into one byte buffer through a FileChannel and the
+ * fields are scanned in place: numbers and ISO timestamps are decoded straight
+ * from the bytes, only text columns become Strings.
+ * Quoting follows RFC 4180 ("a, b" and "say ""hi""").
+ *
+ * Usage:
+ *   while (scanner.nextRecord()) {
+ *       int id = scanner.intField();
+ *       String title = scanner.stringField();
+ *       ...
+ *   }
+ */
+public class CsvScanner {
+    private final byte[] data;
+    private final int limit;
+    private int pos;
+    // false once the last field of the current record was read
+    private boolean recordHasMore;
+
+    // bounds of the field read last (quotes excluded)
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean fieldHasEscapedQuote;
+
+    // reused when a field needs unescaping
+    private byte[] scratch = new byte[64];
+
+    public CsvScanner(byte[] data, int length) {
+        this(data, 0, length);
+    }
+
+    // scans only data[from, to), used to parse one chunk of a bigger file
+    public CsvScanner(byte[] data, int from, int to) {
+        this.data = data;
+        this.pos = from;
+        this.limit = to;
+    }
+
+    public static CsvScanner open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // read into the heap instead of mapping: a live mapping keeps the file
+            // locked on Windows and would block the next save
+            int size = (int) channel.size();
+            byte[] bytes = new byte[size];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            return new CsvScanner(bytes, buffer.position());
+        }
+    }
+
+    /**
+     * Moves to the start of the next non-blank record, skipping whatever is
+     * left of the current one.
+     * @return false at the end of the data
+     */
+    public boolean nextRecord() {
+        while (recordHasMore) {
+            scanField();
+        }
+        while (pos < limit) {
+            byte b = data[pos];
+            if (b == '\n' || b == '\r' || b == ' ' || b == '\t') {
+                pos++;
+                continue;
+            }
+            recordHasMore = true;
+            return true;
+        }
+        return false;
+    }
+
+    // skips the current record, e.g. the header line
+    public void skipRecord() {
+        nextRecord();
+        while (recordHasMore) {
+            scanField();
+        }
+    }
+
+    public boolean hasMoreFields() {
+        return recordHasMore;
+    }
+
+    public void skipField() {
+        scanField();
+    }
+
+    /**
+     * @return the next field as text, or null if the record has no more fields
+     */
+    public String stringField() {
+        if (!recordHasMore) {
+            return null;
+        }
+        scanField();
+        int length = fieldEnd - fieldStart;
+        if (!fieldHasEscapedQuote) {
+            return new String(data, fieldStart, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        int n = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            scratch[n++] = data[i];
+            // "" inside quotes is one "
+            if (data[i] == '"') i++;
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the next field as an int without creating a String.
+     * Surrounding spaces are ignored.
+     */
+    public int intField() {
+        if (!recordHasMore) {
+            throw new NumberFormatException("missing field");
+        }
+        scanField();
+        int i = fieldStart;
+        int end = fieldEnd;
+        while (i < end && data[i] == ' ') i++;
+        while (end > i && data[end - 1] == ' ') end--;
+        boolean negative = i < end && data[i] == '-';
+        if (negative) i++;
+        if (i == end) {
+            throw new NumberFormatException("empty number");
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a number: " + new String(data, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes the fixed ISO layouts written by LocalDateTime.toString()
+     * ("yyyy-MM-ddTHH:mm" and "yyyy-MM-ddTHH:mm:ss") by hand.
+     * Anything else falls back to LocalDateTime.parse().
+     */
+    public LocalDateTime dateTimeField() {
+        if (!recordHasMore) {
+            throw new DateTimeParseException("missing field", "", 0);
+        }
+        scanField();
+        int i = fieldStart;
+        int end = fieldEnd;
+        while (i < end && data[i] == ' ') i++;
+        while (end > i && data[end - 1] == ' ') end--;
+        int length = end - i;
+        if ((length == 16 || length == 19)
+                && data[i + 4] == '-' && data[i + 7] == '-' && data[i + 10] == 'T' && data[i + 13] == ':'
+                && (length == 16 || data[i + 16] == ':')) {
+            int year = digits(i, 4);
+            int month = digits(i + 5, 2);
+            int day = digits(i + 8, 2);
+            int hour = digits(i + 11, 2);
+            int minute = digits(i + 14, 2);
+            int second = length == 19 ? digits(i + 17, 2) : 0;
+            if ((year | month | day | hour | minute | second) >= 0) {
+                // of() still validates the ranges (e.g. month 13)
+                return LocalDateTime.of(year, month, day, hour, minute, second);
+            }
+        }
+        return LocalDateTime.parse(new String(data, i, length, StandardCharsets.UTF_8));
+    }
+
+    // -1 if any byte is not a digit
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // finds the bounds of the next field and consumes its delimiter
+    private void scanField() {
+        fieldHasEscapedQuote = false;
+        if (pos < limit && data[pos] == '"') {
+            fieldStart = ++pos;
+            while (pos < limit) {
+                if (data[pos] == '"') {
+                    if (pos + 1 < limit && data[pos + 1] == '"') {
+                        fieldHasEscapedQuote = true;
+                        pos += 2;
+                        continue;
+                    }
+                    break;
+                }
+                pos++;
+            }
+            fieldEnd = pos;
+            pos++; // closing quote
+            // ignore anything between the closing quote and the delimiter
+            while (pos < limit && data[pos] != ',' && data[pos] != '\n') pos++;
+        } else {
+            fieldStart = pos;
+            while (pos < limit && data[pos] != ',' && data[pos] != '\n') pos++;
+            fieldEnd = pos;
+            if (fieldEnd > fieldStart && data[fieldEnd - 1] == '\r') fieldEnd--;
+        }
+        if (pos < limit && data[pos] == ',') {
+            pos++;
+            recordHasMore = true;
+        } else {
+            pos++; // newline or end of data
+            recordHasMore = false;
+        }
+    }
+
+    // bytes left after the current position
+    public int remaining() {
+        return limit - pos;
+    }
+
+    /**
+     * Cuts the unread part of the data into at most 'parts' scanners of similar size,
+     * each starting at the beginning of a line. Only valid for files without line
+     * breaks inside quoted fields, which escape() guarantees for everything we write.
+     */
+    public CsvScanner[] split(int parts) {
+        List<CsvScanner> chunks = new ArrayList<>(parts);
+        int from = pos;
+        int chunkSize = Math.max(1, (limit - pos) / Math.max(1, parts));
+        while (from < limit) {
+            int to = Math.min(limit, from + chunkSize);
+            // extend to the end of the line the cut falls into
+            while (to < limit && data[to - 1] != '\n') to++;
+            chunks.add(new CsvScanner(data, from, to));
+            from = to;
+        }
+        return chunks.toArray(new CsvScanner[0]);
+    }
+
+    // ---- helpers for single lines (journal records, backup files) and for writing ----
+
+    /**
+     * Splits one CSV line into its fields, honouring quotes.
+     */
+    public static String[] splitLine(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        CsvScanner scanner = new CsvScanner(bytes, bytes.length);
+        List<String> fields = new ArrayList<>();
+        if (scanner.nextRecord()) {
+            while (scanner.hasMoreFields()) {
+                fields.add(scanner.stringField());
+            }
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Quotes a value only when it needs it (comma, quote or leading/trailing space).
+     * Line breaks are flattened to spaces so every record stays on one line.
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            value = value.replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ');
+        }
+        boolean needsQuotes = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || (!value.isEmpty() && (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' '));
+        if (!needsQuotes) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
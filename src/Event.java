@@ -8,10 +8,13 @@ public class Event {
     private LocalDateTime startDateTime;
     private LocalDateTime endDateTime;
 
-    // additional fields with default value
-    private String location = "None";
-    private String category = "General";
-    private String attendees = "None";
+    // additional fields; category is an id into the shared StringDictionary
+    // (the same few categories repeat across thousands of events). Location and
+    // attendees are free text, interning them would keep every value ever typed or loaded.
+    private static final StringDictionary DICTIONARY = StringDictionary.shared();
+    private String location;
+    private int categoryId;
+    private String attendees;
 
     // constructors: same name but java can distinguish them through parameters
 
@@ -29,15 +32,15 @@ public class Event {
         this.description = description;
         this.startDateTime = startDateTime;
         this.endDateTime = endDateTime;
-        this.location = location;
-        this.category = category;
-        this.attendees = attendees;
+        setLocation(location);
+        setCategory(category);
+        setAttendees(attendees);
     }
 
     /**
      * Constructor for RECURRING event
-     * Called ONLY by RecurrenceManager when generating recurring occurrence instances
-     * within a search range. (if not given by users, set the range to prevent infinite loop)
+     * Called by Occurrence.toEvent() when a single recurring instance is opened for editing
+     * (searches themselves return lightweight Occurrence objects, not copies).
      * It copies the details from the baseEvent
      *
      * @param baseEvent the event template loaded by FileManager
@@ -52,7 +55,7 @@ public class Event {
         this.endDateTime = newEnd;
         // additional fields
         this.location = baseEvent.location;
-        this.category = baseEvent.category;
+        this.categoryId = baseEvent.categoryId;
         this.attendees = baseEvent.attendees;
     }
 
@@ -62,7 +65,7 @@ public class Event {
     }
 
     public void setCategory(String category) {
-        this.category = category;
+        this.categoryId = DICTIONARY.idOf(category);
     }
 
     public void setAttendees(String attendees) {
@@ -116,7 +119,7 @@ public class Event {
     }
 
     public String getCategory() {
-        return category;
+        return DICTIONARY.valueOf(categoryId);
     }
 
     public String getAttendees() {
@@ -125,16 +128,21 @@ public class Event {
 
     //# added by wy
     // Convert event in arraylist to CSV string for saving (used in saveEvent() method in EventManager.java) 
+    // text columns are quoted when needed, so a comma in a title no longer breaks the row
     public String toCsvString() {
-        return this.eventId + "," + this.title + "," + this.description + "," + this.startDateTime + ","
-                + this.endDateTime + "," + this.location + "," + this.category + "," + this.attendees;
+        return this.eventId + "," + CsvScanner.escape(this.title) + "," + CsvScanner.escape(this.description) + ","
+                + this.startDateTime + "," + this.endDateTime + "," + CsvScanner.escape(getLocation()) + ","
+                + CsvScanner.escape(getCategory()) + "," + CsvScanner.escape(getAttendees());
     }
 
     public String toAdditionalCsv() {
+        String location = getLocation();
+        String category = getCategory();
+        String attendees = getAttendees();
         return String.join(",", String.valueOf(eventId),
-                (location == null ? "None" : location),
-                (category == null ? "General" : category),
-                (attendees == null ? "None" : attendees));
+                CsvScanner.escape(location == null ? "None" : location),
+                CsvScanner.escape(category == null ? "General" : category),
+                CsvScanner.escape(attendees == null ? "None" : attendees));
     }
 
     /**
@@ -150,10 +158,27 @@ public class Event {
         this.startDateTime = LocalDateTime.parse(parts[3]);
         this.endDateTime = LocalDateTime.parse(parts[4]);
 
-        this.location = (parts.length > 5) ? parts[5].trim() : "None";
-        this.category = (parts.length > 6) ? parts[6].trim() : "General";
-        this.attendees = (parts.length > 7) ? parts[7].trim() : "None";
+        setLocation((parts.length > 5) ? parts[5].trim() : "None");
+        setCategory((parts.length > 6) ? parts[6].trim() : "General");
+        setAttendees((parts.length > 7) ? parts[7].trim() : "None");
+
+    }
 
+    /**
+     * Used by FileManager to create an Event straight from the current row of
+     * a CsvScanner (event.csv column order), without splitting the line first.
+     */
+    public static Event fromCsv(CsvScanner row) {
+        int eventId = row.intField();
+        String title = row.stringField();
+        String description = row.stringField();
+        LocalDateTime start = row.dateTimeField();
+        LocalDateTime end = row.dateTimeField();
+
+        String location = row.hasMoreFields() ? row.stringField().trim() : "None";
+        String category = row.hasMoreFields() ? row.stringField().trim() : "General";
+        String attendees = row.hasMoreFields() ? row.stringField().trim() : "None";
+        return new Event(eventId, title, description, start, end, location, category, attendees);
     }
 
     @Override
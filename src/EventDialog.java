@@ -8,7 +8,6 @@ import javafx.scene.layout.HBox;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,6 +45,10 @@ public class EventDialog {
     public void edit(Event eventToEdit){
         prepareAndShow(eventToEdit, null);
     }
+    // one instance of a recurring event: saved as an InstanceOverride, the series is left as it is
+    public void editInstance(Occurrence instance){
+        prepareAndShow(instance.toEvent(), null, instance);
+    }
     // create event from calendar cell with date
     public void create(LocalDate initialDate){
         prepareAndShow(null, initialDate);
@@ -59,9 +62,13 @@ public class EventDialog {
      * @param eventToEdit If null: "Create mode", if provided: "Edit mode"
      */
     public void prepareAndShow(Event eventToEdit, LocalDate initialDate) {
+        prepareAndShow(eventToEdit, initialDate, null);
+    }
+
+    private void prepareAndShow(Event eventToEdit, LocalDate initialDate, Occurrence instance) {
         boolean isEditMode = (eventToEdit != null);
         Dialog<Event> dialog = new Dialog<>();
-        dialog.setTitle(isEditMode ? "Edit Event" : "Create Event");
+        dialog.setTitle(instance != null ? "Edit Occurrence" : isEditMode ? "Edit Event" : "Create Event");
         dialog.setHeaderText(isEditMode ? "Modify event details" : "Enter event details");
 
         ButtonType saveButtonType = new ButtonType(isEditMode ? "Update" : "Create", ButtonBar.ButtonData.OK_DONE);
@@ -216,10 +223,13 @@ public class EventDialog {
 
         //recurrent info
         ComboBox<String> repeatUnit = new ComboBox<>();
-        repeatUnit.getItems().addAll("Do not repeat", "Daily", "Weekly", "Monthly", "Annually");
+        repeatUnit.getItems().addAll("Do not repeat", "Daily", "Weekly", "Monthly", "Annually", "Custom rule");
         repeatUnit.setValue("Do not repeat");
 
         TextField repeatFreq = new TextField("1");
+        // iCalendar style rule text, see RecurrenceRule
+        TextField customRule = new TextField();
+        customRule.setPromptText("FREQ=WEEKLY;BYDAY=MO,WE,FR");
 
         // mutual exclusive(only one exists at one time):
         // either times or endDate
@@ -252,18 +262,21 @@ public class EventDialog {
             startHour.getValueFactory().setValue(eventToEdit.getStartDateTime().getHour());
             startMin.getValueFactory().setValue(eventToEdit.getStartDateTime().getMinute());
 
-            var rules = fileManager.loadRecurrentRules();
+            var rules = fileManager.getRepository().getRules();
             if (rules.containsKey(eventToEdit.getEventId())){
                 RecurrenceRule rule = rules.get(eventToEdit.getEventId());
-                String interval = rule.getRecurrentInterval();
-                repeatFreq.setText(interval.substring(0, 1));
-                char unit = interval.charAt(1);
-                repeatUnit.setValue(switch (unit){
-                    case 'd' -> "Daily";
-                    case 'w' -> "Weekly";
-                    case 'm' -> "Monthly";
-                    default -> "Annually";
+                // the whole amount, "12d" used to show up as "1"
+                repeatFreq.setText(String.valueOf(rule.getAmount()));
+                repeatUnit.setValue(switch (rule.getUnit()){
+                    case DAY -> "Daily";
+                    case WEEK -> "Weekly";
+                    case MONTH -> "Monthly";
+                    case YEAR -> "Annually";
                 });
+                if (!rule.isShortForm()) {
+                    repeatUnit.setValue("Custom rule");
+                    customRule.setText(rule.getRecurrentInterval());
+                }
                 // time is the condition
                 if (rule.getRecurrentTimes() > 0){
                     timesRadio.setSelected(true);
@@ -284,6 +297,19 @@ public class EventDialog {
 
         }
 
+        // repeat and reminder settings belong to the whole series
+        if (instance != null){
+            repeatUnit.setValue("Do not repeat");
+            repeatUnit.setDisable(true);
+            repeatFreq.setDisable(true);
+            timesRadio.setDisable(true);
+            repeatTimes.setDisable(true);
+            dateRadio.setDisable(true);
+            recEndDatePicker.setDisable(true);
+            reminderBox.setDisable(true);
+            customReminderBox.setDisable(true);
+        }
+
         // Date restriction logic
         // customized date picker :for every cell(picker) , return new cell with custom rules and style
 
@@ -326,7 +352,10 @@ public class EventDialog {
 
         //logic to enable/disable based on ToggleGroup and RepeatUnit
         BooleanBinding noRepeat = repeatUnit.valueProperty().isEqualTo("Do not repeat");
-        repeatFreq.disableProperty().bind(noRepeat);
+        BooleanBinding customRepeat = repeatUnit.valueProperty().isEqualTo("Custom rule");
+        repeatFreq.disableProperty().bind(noRepeat.or(customRepeat));
+        customRule.visibleProperty().bind(customRepeat);
+        customRule.managedProperty().bind(customRepeat);
         timesRadio.disableProperty().bind(noRepeat);
         dateRadio.disableProperty().bind(noRepeat);
 
@@ -364,7 +393,7 @@ public class EventDialog {
         grid.add(reminderContainer, 1, 7, 2, 1);
 
         grid.add(new Label("Repeat Every:"), 0, 8);
-        HBox freqBox = new HBox(5, repeatFreq, repeatUnit);
+        HBox freqBox = new HBox(5, repeatFreq, repeatUnit, customRule);
         grid.add(freqBox, 1, 8, 2, 1);
 
         grid.add(new Separator(), 0, 9, 3, 1);
@@ -425,15 +454,27 @@ public class EventDialog {
                     case "Annually" -> 'y';
                     default -> 'd';
                 };
-                String interval = repeatFreq.getText().trim() + unit;
-                int times = timesRadio.isSelected() ? Integer.parseInt(repeatTimes.getText()) : 0;
+                String interval = customRepeat.get() ? customRule.getText().trim() : repeatFreq.getText().trim() + unit;
                 LocalDateTime recEndDate = dateRadio.isSelected() ? recEndDatePicker.getValue().atTime(23, 59) : null;
-                candidateRule = new RecurrenceRule(id, interval, times, recEndDate);
+                try {
+                    int times = timesRadio.isSelected() ? Integer.parseInt(repeatTimes.getText().trim()) : 0;
+                    candidateRule = new RecurrenceRule(id, interval, times, recEndDate);
+                } catch (IllegalArgumentException invalid) {
+                    // also catches NumberFormatException from the times field
+                    String detail = invalid instanceof NumberFormatException
+                            ? "repeat times must be a whole number of 0 or more" : invalid.getMessage();
+                    Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid repeat settings: " + detail);
+                    alert.setTitle("Invalid Repeat");
+                    alert.show();
+                    event.consume(); // Prevent dialog close
+                    return;
+                }
             }
             
             ConflictDetector detector = new ConflictDetector(fileManager, recurrenceManager);
-            if (detector.check(candidate, candidateRule)) {
-                Alert alert = new Alert(Alert.AlertType.WARNING, "This event conflicts with an existing event!");
+            List<ConflictDetector.Conflict> conflicts = detector.findConflicts(candidate, candidateRule);
+            if (!conflicts.isEmpty()) {
+                Alert alert = new Alert(Alert.AlertType.WARNING, describeConflicts(conflicts));
                 alert.setTitle("Conflict Detected");
                 alert.show();
                 event.consume(); // Prevent dialog close
@@ -444,9 +485,6 @@ public class EventDialog {
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == saveButtonType) {
                 try {
-                    List<Event> allEvent = fileManager.loadEvents();
-                    var allRules = fileManager.loadRecurrentRules();
-
                     LocalDateTime start = LocalDateTime.of(startDatePicker.getValue(),
                             LocalTime.of(startHour.getValue(), startMin.getValue()));
                     LocalDateTime end = LocalDateTime.of(startDatePicker.getValue(),
@@ -455,24 +493,25 @@ public class EventDialog {
                     int ID = isEditMode ? eventToEdit.getEventId() : fileManager.getNextAvailableEventId();
 
                     String attendeesReplaceComma = attendeesField.getText().replace(",",";");
-                    if(isEditMode){
-                        // delete old events
-                        allEvent.removeIf(e -> e.getEventId() == ID);
-                        allRules.remove(ID);
-                    }
 
                     // auto fix if invalid end date
                     if (end.isBefore(start)){
                         end = start.plusHours(1);
                     }
-                    // update with new event
+                    // create or replace the event with this ID
                     Event newEvent = new Event(ID, titleField.getText(), descField.getText(), start, end,
                             locationField.getText(), categoryBox.getValue(), attendeesReplaceComma);
-                    allEvent.add(newEvent);
 
-                    // Save events to file
-                    System.out.println("Saving " + allEvent.size() + " events...");
-                    fileManager.saveEvents(allEvent);
+                    if (instance != null) {
+                        // only this instance changes, the series and its rule stay as they are
+                        fileManager.saveOverride(new InstanceOverride(ID, instance.getOriginalStartMinute(), newEvent));
+                        System.out.println("Occurrence updated: " + newEvent.getTitle());
+                        onSaveCallback.run();
+                        return null;
+                    }
+
+                    // updates memory now, the journal record is written in the background
+                    fileManager.saveEvent(newEvent);
                     System.out.println("Event Created and Saved: " + newEvent.getTitle());
 
                     // SAVE REMINDER
@@ -521,18 +560,20 @@ public class EventDialog {
                             case "Annually" -> 'y';
                             default -> 'd';
                         };
-                        String interval = repeatFreq.getText().trim() + unit;
+                        String interval = customRepeat.get() ? customRule.getText().trim() : repeatFreq.getText().trim() + unit;
                         // default value
-                        int times = timesRadio.isSelected() ? Integer.parseInt(repeatTimes.getText()) : 0;
+                        int times = timesRadio.isSelected() ? Integer.parseInt(repeatTimes.getText().trim()) : 0;
                         LocalDateTime recEndDate = dateRadio.isSelected() ? recEndDatePicker.getValue().atTime(23, 59) : null;
 
                         // save recurrentRule to the file
                         RecurrenceRule newRule = new RecurrenceRule(ID, interval, times, recEndDate);
-                        allRules.put(ID, newRule);
-                        System.out.println("Saving recurrent Rules...");
-                        fileManager.saveRecurrenceRule(new ArrayList<>(allRules.values()));
+                        System.out.println("Saving recurrent Rule...");
+                        fileManager.saveRule(newRule);
+                    } else if (isEditMode && fileManager.getRepository().getRules().containsKey(ID)) {
+                        // switched to "Do not repeat": drop the old rule
+                        fileManager.deleteRule(ID);
                     }
-                    onSaveCallback.run(); // drawCalender is passed to refresh view
+                    onSaveCallback.run(); // drawCalender is passed to refresh view (reads from memory, no disk wait)
                 } catch (Exception e) {
                     System.out.println("Error creating event: " + e.getMessage());
                 }
@@ -545,6 +586,21 @@ public class EventDialog {
 
 
 
+    // cancel one instance of a recurring event, with confirmation popup
+    public void deleteInstance(Occurrence instance){
+        Alert confirm = new Alert(Alert.AlertType.WARNING,
+                "Are you sure to delete '" + instance.getTitle() + "' on " + instance.getStartDateTime().toLocalDate() + "?",
+                ButtonType.YES, ButtonType.NO);
+        confirm.setTitle("Confirm delete");
+        confirm.setHeaderText(null);
+
+        Optional<ButtonType> result = confirm.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.YES){
+            fileManager.saveOverride(InstanceOverride.cancelled(instance.getEventId(), instance.getOriginalStartMinute()));
+            onSaveCallback.run();
+        }
+    }
+
     // delete with confirmation popup
     public void delete(Event event){
         Alert confirm = new Alert(Alert.AlertType.WARNING,
@@ -559,15 +615,10 @@ public class EventDialog {
         */
         if (result.isPresent() && result.get() == ButtonType.YES){
             try{
-                List<Event> allEvent = fileManager.loadEvents();
-                allEvent.removeIf(e -> e.getEventId() == event.getEventId());
-                fileManager.saveEvents(allEvent);
-
-                var rules = fileManager.loadRecurrentRules();
-                if (rules.containsKey(event.getEventId())){
-                    rules.remove(event.getEventId());
-                    fileManager.saveRecurrenceRule(new ArrayList<>(rules.values()));
+                if (fileManager.getRepository().getRules().containsKey(event.getEventId())){
+                    fileManager.deleteRule(event.getEventId());
                 }
+                fileManager.deleteEvent(event.getEventId());
                 
                 // Delete reminder
                 new ReminderManager().deleteReminder(event.getEventId());
@@ -580,4 +631,20 @@ public class EventDialog {
         }
     }
 
+    // the first few collisions, one per line
+    private static String describeConflicts(List<ConflictDetector.Conflict> conflicts) {
+        final int shown = 5;
+        StringBuilder text = new StringBuilder("This event conflicts with an existing event!");
+        for (ConflictDetector.Conflict conflict : conflicts.subList(0, Math.min(shown, conflicts.size()))) {
+            Occurrence existing = conflict.getExisting();
+            text.append("\n").append(conflict.getCandidate().getStartDateTime().toLocalDate())
+                    .append(": ").append(existing.getTitle())
+                    .append(" (").append(existing.getStartDateTime().toLocalTime())
+                    .append(" - ").append(existing.getEndDateTime().toLocalTime()).append(")");
+        }
+        if (conflicts.size() > shown) {
+            text.append("\n... and ").append(conflicts.size() - shown).append(" more");
+        }
+        return text.toString();
+    }
 }
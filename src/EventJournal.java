@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only write-ahead journal for single event / rule changes.
+ *
+ * Every create, update or delete is appended as one small line
+ * ("op,payload") instead of rewriting the store.
+ * EventRepository replays the records on top of the store segments when loading
+ * and FileManager folds them back into the segments once the journal gets long (compaction).
+ *
+ * Replaying is idempotent, so a crash between compaction and clearing
+ * the journal only replays the same records again. A record that cannot be parsed
+ * (e.g. a line torn by a crash during append) is logged and skipped, the rest still load.
+ */
+public class EventJournal {
+    // payload: Event.toCsvString()
+    public static final String PUT_EVENT = "PUT";
+    // payload: eventId
+    public static final String DELETE_EVENT = "DEL";
+    // payload: RecurrenceRule.toCsvR()
+    public static final String PUT_RULE = "RULE";
+    // payload: eventId
+    public static final String DELETE_RULE = "UNRULE";
+
+    /**
+     * One parsed record: op plus the event (PUT_EVENT), the rule (PUT_RULE)
+     * or only the eventId (the deletes).
+     */
+    public static final class Change {
+        private final String op;
+        private final int eventId;
+        private final Event event;
+        private final RecurrenceRule rule;
+
+        private Change(String op, int eventId, Event event, RecurrenceRule rule) {
+            this.op = op;
+            this.eventId = eventId;
+            this.event = event;
+            this.rule = rule;
+        }
+
+        public String getOp() { return op; }
+        public int getEventId() { return eventId; }
+        public Event getEvent() { return event; }
+        public RecurrenceRule getRule() { return rule; }
+    }
+
+    private final Path path;
+    // number of records in the file, -1 until counted
+    private int recordCount = -1;
+    // whether the file is known to end with a line break, checked before the first append
+    private boolean tailChecked;
+
+    public EventJournal(String filePath) {
+        this.path = Paths.get(filePath);
+    }
+
+    public synchronized void append(String op, String payload) {
+        String line = op + "," + payload + System.lineSeparator();
+        if (!tailChecked) {
+            // a crash during an append can leave a last line without its line break;
+            // finish it so this record starts a line of its own instead of joining the broken one
+            if (!endsWithLineBreak()) {
+                line = System.lineSeparator() + line;
+            }
+            tailChecked = true;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // the record is the only copy of this change until compaction
+            channel.force(false);
+            if (recordCount >= 0) {
+                recordCount++;
+            }
+        } catch (IOException e) {
+            // part of the line may have been written, check again next time
+            tailChecked = false;
+            System.err.println("Error appending to journal: " + e.getMessage());
+        }
+    }
+
+    // true for a missing or empty file too
+    private boolean endsWithLineBreak() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n';
+        } catch (NoSuchFileException e) {
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+            return false; // an extra blank line is skipped when reading
+        }
+    }
+
+    /**
+     * @return records in the order they were written, each as {op, payload}
+     */
+    public synchronized List<String[]> readRecords() {
+        List<String[]> records = new ArrayList<>();
+        if (Files.notExists(path)) {
+            recordCount = 0;
+            return records;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                int comma = line.indexOf(',');
+                // skip blank lines and lines torn before the first comma
+                if (comma <= 0) continue;
+                records.add(new String[]{line.substring(0, comma), line.substring(comma + 1)});
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+        }
+        recordCount = records.size();
+        return records;
+    }
+
+    /**
+     * @return the records that parse, in the order they were written. A broken one,
+     *         usually the last line half-written when the app died, is logged and left out.
+     */
+    public synchronized List<Change> readChanges() {
+        List<Change> changes = new ArrayList<>();
+        for (String[] record : readRecords()) {
+            try {
+                Change change = switch (record[0]) {
+                    case PUT_EVENT -> {
+                        Event event = new Event(CsvScanner.splitLine(record[1]));
+                        yield new Change(PUT_EVENT, event.getEventId(), event, null);
+                    }
+                    case PUT_RULE -> {
+                        RecurrenceRule rule = RecurrenceRule.fromCsvR(record[1]);
+                        if (rule == null) {
+                            throw new IllegalArgumentException("unreadable rule");
+                        }
+                        yield new Change(PUT_RULE, rule.getEventId(), null, rule);
+                    }
+                    case DELETE_EVENT, DELETE_RULE -> new Change(record[0], Integer.parseInt(record[1].trim()), null, null);
+                    default -> throw new IllegalArgumentException("unknown op '" + record[0] + "'");
+                };
+                changes.add(change);
+            } catch (RuntimeException e) {
+                System.err.println("Skipping malformed journal record '" + record[0] + "," + record[1] + "': " + e.getMessage());
+            }
+        }
+        return changes;
+    }
+
+    public synchronized int size() {
+        if (recordCount < 0) {
+            readRecords();
+        }
+        return recordCount;
+    }
+
+    // drop every record, used after a full compaction
+    public synchronized void clear() {
+        try {
+            Files.deleteIfExists(path);
+            recordCount = 0;
+        } catch (IOException e) {
+            System.err.println("Error clearing journal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// checks that the journal survives a record torn by a crash, run with: java EventJournalTest
+public class EventJournalTest {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("journal-test");
+        Path file = dir.resolve("journal.csv");
+        LocalDateTime start = LocalDateTime.of(2025, 1, 10, 9, 0);
+
+        EventJournal journal = new EventJournal(file.toString());
+        journal.append(EventJournal.PUT_EVENT, new Event(1, "Standup", "", start, start.plusMinutes(15), "", "Work", "").toCsvString());
+
+        // the app dies halfway through the next record: no line break at the end of the file
+        String torn = EventJournal.PUT_EVENT + "," + new Event(2, "Review", "", start, start.plusHours(1), "", "Work", "").toCsvString();
+        Files.writeString(file, torn.substring(0, torn.length() / 2), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // after a restart the next record still has to come through
+        EventJournal reopened = new EventJournal(file.toString());
+        reopened.append(EventJournal.PUT_EVENT, new Event(3, "Lunch", "", start.plusHours(3), start.plusHours(4), "", "Personal", "").toCsvString());
+        reopened.append(EventJournal.DELETE_EVENT, "1");
+
+        List<String> changes = new ArrayList<>();
+        for (EventJournal.Change change : new EventJournal(file.toString()).readChanges()) {
+            changes.add(change.getOp() + " " + change.getEventId());
+        }
+        check("record appended after a torn one is kept", changes, List.of("PUT 1", "PUT 3", "DEL 1"));
+
+        // an intact file gets no extra blank lines
+        check("no blank line added after a complete record",
+                Files.readAllLines(file, StandardCharsets.UTF_8).stream().filter(String::isEmpty).count(), 0L);
+
+        Files.delete(file);
+        Files.delete(dir);
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed.");
+            System.exit(1);
+        }
+        System.out.println("All journal checks passed.");
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        if (actual.equals(expected)) {
+            System.out.println("PASS " + name);
+        } else {
+            failures++;
+            System.out.println("FAIL " + name + ": expected " + expected + " but got " + actual);
+        }
+    }
+}
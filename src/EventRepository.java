@@ -0,0 +1,299 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Long-lived, in-memory copy of the calendar shared by every reader
+ * (search bar, month navigation, conflict checks, reminder scheduler).
+ *
+ * The store is split by month (see PartitionedStore). The manifest, the id index,
+ * the recurring segment, the journal and the instance overrides are loaded up front;
+ * month segments are read the first time a query window touches them and then served
+ * from memory. Everything is dropped and re-read when the manifest, the journal or
+ * overrides.csv changes on disk (modification time or size) or when a bulk write goes through FileManager.
+ *
+ * The current state is an immutable CalendarSnapshot behind an AtomicReference.
+ * Readers on any thread (FX thread, reminder scheduler, background writer) take
+ * snapshot() and never lock; writers are serialized on writeLock, build the next
+ * version from the current one and swap it in.
+ *
+ * Single-record edits are applied here first (putEvent, removeRule, ...) and written
+ * to disk later by PersistenceService. While such writes are pending, the memory is
+ * ahead of the files, so the files are not looked at until the writer catches up.
+ */
+public class EventRepository {
+    private final PartitionedStore store;
+    private final EventJournal journal;
+    private final Path overridesPath;
+    private final String[] watchedFiles;
+
+    // null until the first read, or after invalidate()
+    private final AtomicReference<CalendarSnapshot> current = new AtomicReference<>();
+    // (lastModified, length) of every watched file when the current data was loaded
+    private volatile long[] loadedStamp;
+    // guards every change of 'current' and 'loadedStamp'
+    private final Object writeLock = new Object();
+    // keeps versions increasing across reloads, guarded by writeLock
+    private long lastVersion;
+    // full-text index, created on the first keyword search after each reload, extended
+    // by every edit and by the month segments read since; replaced under writeLock
+    private volatile TextIndex textIndex;
+
+    EventRepository(PartitionedStore store, EventJournal journal, String journalPath, String overridesPath) {
+        this.store = store;
+        this.journal = journal;
+        this.overridesPath = Paths.get(overridesPath);
+        this.watchedFiles = new String[]{store.getManifestPath().toString(), journalPath, overridesPath};
+    }
+
+    /**
+     * @return the current consistent view; use one snapshot for related reads
+     *         (e.g. events and rules of the same search)
+     */
+    public CalendarSnapshot snapshot() {
+        CalendarSnapshot snapshot = current.get();
+        if (snapshot != null && isFresh()) {
+            return snapshot;
+        }
+        synchronized (writeLock) {
+            return refreshIfStale();
+        }
+    }
+
+    /**
+     * @return every base event (read-only). Reads all segments, range queries go through
+     *         snapshot().singleEventsBetween() instead.
+     */
+    public List<Event> getEvents() {
+        return snapshot().getEvents();
+    }
+
+    /**
+     * @return recurrence rules keyed by eventId (read-only)
+     */
+    public Map<Integer, RecurrenceRule> getRules() {
+        return snapshot().getRules();
+    }
+
+    // highest eventId stored or journaled
+    public int getMaxEventId() {
+        return snapshot().getMaxEventId();
+    }
+
+    /**
+     * @return the text index of the current data (see TextIndex), created now if needed
+     *         and brought up to date with the month segments read so far. Reads no segment.
+     */
+    public TextIndex textIndex() {
+        CalendarSnapshot snapshot = snapshot();
+        TextIndex index = textIndex;
+        if (index == null || !index.isFor(snapshot.getSegments())) {
+            synchronized (writeLock) {
+                snapshot = refreshIfStale();
+                index = textIndex;
+                if (index == null || !index.isFor(snapshot.getSegments())) {
+                    // tied to the segment cache: it is replaced exactly when the files are reloaded
+                    index = new TextIndex(snapshot.getSegments());
+                    for (Event e : snapshot.overlayEvents()) {
+                        index.add(e);
+                    }
+                    for (InstanceOverride override : snapshot.getOverrides().values()) {
+                        if (!override.isCancelled()) {
+                            index.add(override.getReplacement());
+                        }
+                    }
+                    textIndex = index;
+                }
+            }
+        }
+        // only the months read so far, a search never filters events of a month it did not read
+        index.addSegments(snapshot.getSegments().loaded());
+        return index;
+    }
+
+    // segments read so far in their on-disk state, for the binary copies written on exit
+    public Map<String, CalendarData> getLoadedSegments() {
+        CalendarSnapshot snapshot = current.get();
+        return snapshot == null ? Map.of() : snapshot.getSegments().onDisk();
+    }
+
+    // called by FileManager after every bulk write so the next read reloads
+    public void invalidate() {
+        synchronized (writeLock) {
+            current.set(null);
+            loadedStamp = null;
+        }
+    }
+
+    /**
+     * Called by the background writer after it wrote one of our own changes,
+     * so the new modification time does not look like an outside change.
+     */
+    public void acknowledgeWrite() {
+        synchronized (writeLock) {
+            if (current.get() != null) {
+                loadedStamp = readStamp();
+            }
+        }
+    }
+
+    /**
+     * Runs a journal compaction that rewrites the given segments.
+     * Their old contents are kept in memory first: together with the overlay (which
+     * still holds every compacted record) they give the same view as the new files,
+     * so nothing has to be reloaded and a segment read later cannot mix old and new state.
+     * Once the write succeeded, the next snapshot points at the new files and its overlay
+     * drops the compacted records (see CalendarSnapshot.compacted()).
+     *
+     * @param folded net effect of the compacted journal, eventId -> event, null = deleted
+     * @param write commits the files, false if it failed (the old files and journal stay)
+     */
+    public void compact(Map<String, CalendarData> oldSegments, Map<String, PartitionedStore.SegmentInfo> newManifest,
+                        Map<Integer, String> newIndex, Map<Integer, Event> folded, BooleanSupplier write) {
+        synchronized (writeLock) {
+            CalendarSnapshot snapshot = current.get();
+            if (snapshot != null) {
+                for (Map.Entry<String, CalendarData> entry : oldSegments.entrySet()) {
+                    snapshot.getSegments().pin(entry.getKey(), entry.getValue());
+                }
+            }
+            if (write.getAsBoolean()) {
+                snapshot = current.get();
+                if (snapshot != null) {
+                    publish(snapshot.compacted(Collections.unmodifiableMap(new TreeMap<>(newManifest)),
+                            Collections.unmodifiableMap(new HashMap<>(newIndex)), oldSegments.keySet(), folded));
+                }
+            }
+            acknowledgeWrite();
+        }
+    }
+
+    // ---- in-memory edits, applied to the overlay like a journal record ----
+
+    // create or update; an updated event moves to the end, same as the journal replay
+    public void putEvent(Event event) {
+        synchronized (writeLock) {
+            CalendarSnapshot next = refreshIfStale().withEvent(event);
+            // indexed before it is visible, a search on the new version must find it
+            indexText(next, event);
+            publish(next);
+        }
+    }
+
+    public void removeEvent(int eventId) {
+        synchronized (writeLock) {
+            publish(refreshIfStale().withoutEvent(eventId));
+        }
+    }
+
+    public void putRule(RecurrenceRule rule) {
+        synchronized (writeLock) {
+            publish(refreshIfStale().withRule(rule));
+        }
+    }
+
+    public void removeRule(int eventId) {
+        synchronized (writeLock) {
+            publish(refreshIfStale().withoutRule(eventId));
+        }
+    }
+
+    public void putOverride(InstanceOverride override) {
+        synchronized (writeLock) {
+            CalendarSnapshot next = refreshIfStale().withOverride(override);
+            if (!override.isCancelled()) {
+                indexText(next, override.getReplacement());
+            }
+            publish(next);
+        }
+    }
+
+    public void removeOverrides(int eventId) {
+        synchronized (writeLock) {
+            publish(refreshIfStale().withoutOverrides(eventId));
+        }
+    }
+
+    // caller holds writeLock; deletions need nothing, searches only look at existing events
+    private void indexText(CalendarSnapshot next, Event event) {
+        TextIndex index = textIndex;
+        if (index != null && index.isFor(next.getSegments())) {
+            index.add(event);
+        }
+    }
+
+    // caller holds writeLock
+    private void publish(CalendarSnapshot next) {
+        lastVersion = next.getVersion();
+        current.set(next);
+    }
+
+    private boolean isFresh() {
+        // memory is newer than the files until the pending writes are done
+        return PersistenceService.shared().hasPendingWrites() || Arrays.equals(readStamp(), loadedStamp);
+    }
+
+    // caller holds writeLock; returns the current snapshot, reloaded first if the files changed
+    private CalendarSnapshot refreshIfStale() {
+        CalendarSnapshot snapshot = current.get();
+        if (snapshot != null && isFresh()) {
+            return snapshot;
+        }
+        // stamp is taken BEFORE reading so a change during the load is picked up next time
+        long[] currentStamp = readStamp();
+        Map<String, PartitionedStore.SegmentInfo> manifest = Collections.unmodifiableMap(store.readManifest());
+        Map<Integer, String> index = Collections.unmodifiableMap(store.readIndex());
+        CalendarSnapshot.SegmentCache segments = new CalendarSnapshot.SegmentCache(store);
+
+        // the stored mark still counts ids whose events were deleted and compacted away
+        int maxEventId = store.readMaxEventId();
+        for (int id : index.keySet()) {
+            maxEventId = Math.max(maxEventId, id);
+        }
+        Map<Integer, RecurrenceRule> loadedRules = new HashMap<>(segments.get(PartitionedStore.RECURRING).getRules());
+        Map<Integer, Event> overlay = new LinkedHashMap<>();
+        for (EventJournal.Change change : journal.readChanges()) {
+            int id = change.getEventId();
+            switch (change.getOp()) {
+                case EventJournal.PUT_EVENT -> {
+                    overlay.remove(id);
+                    overlay.put(id, change.getEvent());
+                    maxEventId = Math.max(maxEventId, id);
+                }
+                case EventJournal.DELETE_EVENT -> {
+                    overlay.remove(id);
+                    overlay.put(id, null);
+                    maxEventId = Math.max(maxEventId, id);
+                }
+                case EventJournal.PUT_RULE -> loadedRules.put(id, change.getRule());
+                case EventJournal.DELETE_RULE -> loadedRules.remove(id);
+            }
+        }
+        snapshot = new CalendarSnapshot(lastVersion + 1, manifest, index, segments,
+                Collections.unmodifiableMap(overlay), Collections.unmodifiableMap(loadedRules),
+                Collections.unmodifiableMap(InstanceOverride.readFile(overridesPath)), maxEventId);
+        publish(snapshot);
+        loadedStamp = currentStamp;
+        return snapshot;
+    }
+
+    private long[] readStamp() {
+        long[] stamp = new long[watchedFiles.length * 2];
+        for (int i = 0; i < watchedFiles.length; i++) {
+            File file = new File(watchedFiles[i]);
+            // both are 0 when the file does not exist
+            stamp[i * 2] = file.lastModified();
+            stamp[i * 2 + 1] = file.length();
+        }
+        return stamp;
+    }
+}
@@ -13,37 +13,238 @@ public class EventSearcher{
 
     // BASIC Search: by date range.
 
-    public List<Event> searchByDateRange(LocalDateTime start, LocalDateTime end){
-        List<Event> results = new ArrayList<>();
-        List<Event> baseEvents = fileManager.loadEvents();
-        Map<Integer, RecurrenceRule> rules = fileManager.loadRecurrentRules();
-
-        for (Event base : baseEvents){
-            int eventID = base.getEventId();
-            if (rules.containsKey(eventID)){
-                results.addAll(recurrenceManager.generateOccurrences(base, rules.get(eventID), start, end));
-
-            } else{
-                // baseEvents with no recurrence - CHECK OVERLAP instead of containment
-                if (base.getStartDateTime().isBefore(end) && base.getEndDateTime().isAfter(start)) {
-                    results.add(base);
+    public List<Occurrence> searchByDateRange(LocalDateTime start, LocalDateTime end){
+        return search(start, end, null, null, null, null);
+    }
+
+    /**
+     * searchByDateRange() followed by advanceFilter(), answered from QueryCache when the
+     * same query was run on the same version of the data before.
+     * @return read-only, in start order
+     */
+    public List<Occurrence> search(LocalDateTime start, LocalDateTime end, String keyword, String category,
+                                   String location, String attendees){
+        EventRepository repository = fileManager.getRepository();
+        CalendarSnapshot snapshot = repository.snapshot();
+        QueryCache cache = QueryCache.shared();
+        QueryCache.Query query = new QueryCache.Query(start, end, keyword, category, location, attendees);
+        List<Occurrence> found = cache.get(repository, snapshot.getVersion(), query);
+        if (found != null) return found;
+
+        // the stream is already in start order, it is read up to the window end
+        found = Collections.unmodifiableList(streamFrom(snapshot, start).take(Occurrence.toEpochMinute(end), Integer.MAX_VALUE));
+        if (query.hasFilter()){
+            found = advanceFilter(found, keyword, category, location, attendees);
+        }
+        cache.put(repository, snapshot.getVersion(), query, found);
+        return found;
+    }
+
+    // agenda: the next 'limit' instances that end after 'from', however far away they are
+    public List<Occurrence> upcoming(LocalDateTime from, int limit){
+        return streamFrom(from).take(Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * One page of a paged search, in (start, eventId) order.
+     * Pass it back to searchPage() to get the page after it.
+     */
+    public static final class Page {
+        private final List<Occurrence> items;
+        private final boolean more;
+
+        Page(List<Occurrence> items, boolean more) {
+            this.items = items;
+            this.more = more;
+        }
+
+        public List<Occurrence> getItems() { return items; }
+        public boolean hasMore() { return more; }
+    }
+
+    /**
+     * Date range plus advanceFilter(), one page at a time: only the instances up to the
+     * end of the page are expanded and filtered, however large the range is.
+     *
+     * @param after the previous page, null for the first one; the next page starts right
+     *              after its last item by (start, eventId)
+     */
+    public Page searchPage(LocalDateTime start, LocalDateTime end, String keyword, String category, String location,
+                           String attendees, Page after, int pageSize){
+        long fromMinute = Occurrence.toEpochMinute(start);
+        long toMinute = Occurrence.toEpochMinute(end);
+        Occurrence last = after == null || after.items.isEmpty() ? null : after.items.get(after.items.size() - 1);
+        // resume at the last start (a minute early, so zero-length instances there are kept)
+        OccurrenceStream stream = streamFrom(last == null ? start : last.getStartDateTime().minusMinutes(1));
+
+        List<Occurrence> found = new ArrayList<>();
+        List<Occurrence> batch = new ArrayList<>();
+        long tieStart = Long.MIN_VALUE;
+        while (stream.hasNext()){
+            Occurrence o = stream.next();
+            if (o.getStartMinute() >= toMinute) break;
+            // a full page still takes the instances that start at the same minute as its
+            // last one, the stream does not order them by eventId
+            if (found.size() + batch.size() >= pageSize && o.getStartMinute() != tieStart){
+                found.addAll(advanceFilter(batch, keyword, category, location, attendees));
+                batch.clear();
+                if (found.size() >= pageSize) {
+                    return page(found, pageSize, true);
                 }
             }
+            tieStart = o.getStartMinute();
+            if (o.getEndMinute() <= fromMinute) continue;
+            if (last != null && (o.getStartMinute() < last.getStartMinute()
+                    || o.getStartMinute() == last.getStartMinute() && o.getEventId() <= last.getEventId())) continue;
+            batch.add(o);
+        }
+        found.addAll(advanceFilter(batch, keyword, category, location, attendees));
+        return page(found, pageSize, found.size() > pageSize);
+    }
+
+    private static Page page(List<Occurrence> found, int pageSize, boolean more){
+        List<Occurrence> sorted = new ArrayList<>(found);
+        sorted.sort(Comparator.comparingLong(Occurrence::getStartMinute).thenComparingInt(Occurrence::getEventId));
+        return new Page(sorted.size() > pageSize ? sorted.subList(0, pageSize) : sorted, more);
+    }
+
+    /**
+     * @return every instance that ends after 'start', in start order and with no end.
+     *         Single events, each series and the moved instances are sorted sources of
+     *         their own, merged lazily by OccurrenceStream: nothing is expanded before
+     *         it is read, so the caller can stop at any point.
+     */
+    public OccurrenceStream streamFrom(LocalDateTime start){
+        // one snapshot for events and rules, a save on another thread cannot mix two versions
+        return streamFrom(fileManager.getRepository().snapshot(), start);
+    }
+
+    private OccurrenceStream streamFrom(CalendarSnapshot snapshot, LocalDateTime start){
+        Map<Integer, RecurrenceRule> rules = snapshot.getRules();
+        Map<Long, InstanceOverride> overrides = snapshot.getOverrides();
+
+        List<Iterator<Occurrence>> sources = new ArrayList<>();
+        // single events come from the interval indexes, already in start order
+        sources.add(snapshot.singleEventsFrom(start));
+        Map<Integer, Event> bases = new HashMap<>();
+        for (Event base : snapshot.recurringEvents()){
+            sources.add(recurrenceManager.occurrencesFrom(base, rules.get(base.getEventId()), overrides, start));
+            bases.put(base.getEventId(), base);
+        }
+
+        // moved instances sit at their new time, wherever the series would have put them
+        long fromMinute = Occurrence.toEpochMinute(start);
+        List<Occurrence> moved = new ArrayList<>();
+        for (InstanceOverride override : overrides.values()){
+            Occurrence replacement = override.toOccurrence();
+            Event base = bases.get(override.getEventId());
+            if (replacement != null && base != null && replacement.getEndMinute() > fromMinute
+                    && recurrenceManager.hasInstanceAt(base, rules.get(base.getEventId()), override.getOriginalStartMinute())){
+                moved.add(replacement);
+            }
+        }
+        moved.sort(Comparator.comparingLong(Occurrence::getStartMinute));
+        sources.add(moved.iterator());
+        return new OccurrenceStream(sources);
+    }
+
+    /**
+     * @return how many instances of each event overlap [start, end), without building them.
+     *         Moved instances count for their replacement event (see InstanceOverride).
+     */
+    public Map<Event, Long> countByDateRange(LocalDateTime start, LocalDateTime end){
+        CalendarSnapshot snapshot = fileManager.getRepository().snapshot();
+        Map<Integer, RecurrenceRule> rules = snapshot.getRules();
+        Map<Event, Long> counts = new LinkedHashMap<>();
+
+        for (Occurrence single : snapshot.singleEventsBetween(start, end)){
+            counts.merge(single.getBase(), 1L, Long::sum);
+        }
+        Map<Integer, Event> bases = new HashMap<>();
+        for (Event base : snapshot.recurringEvents()){
+            long count = recurrenceManager.countOccurrences(base, rules.get(base.getEventId()), start, end);
+            if (count > 0) counts.put(base, count);
+            bases.put(base.getEventId(), base);
+        }
+
+        long fromMinute = Occurrence.toEpochMinute(start);
+        long toMinute = Occurrence.toEpochMinute(end);
+        for (InstanceOverride override : snapshot.getOverrides().values()){
+            Event base = bases.get(override.getEventId());
+            if (base == null) continue;
+            RecurrenceRule rule = rules.get(base.getEventId());
+            Occurrence original = new Occurrence(base, override.getOriginalStartMinute(), override.getOriginalStartMinute()
+                    + Occurrence.of(base).getDurationMinutes());
+            Occurrence moved = override.toOccurrence();
+            boolean removesOne = original.overlaps(fromMinute, toMinute);
+            boolean addsOne = moved != null && moved.overlaps(fromMinute, toMinute);
+            if ((removesOne || addsOne) && recurrenceManager.hasInstanceAt(base, rule, override.getOriginalStartMinute())){
+                if (removesOne) counts.computeIfPresent(base, (e, n) -> n > 1 ? n - 1 : null);
+                if (addsOne) counts.merge(moved.getBase(), 1L, Long::sum);
+            }
         }
-        //sort by date (ascending)
-        // Classname::methodName -> method reference
-        // go to class Event and use getStartDateTime method
-        results.sort(Comparator.comparing(Event::getStartDateTime));
-        return results;
+        return counts;
     }
 
-    public List<Event> advanceFilter(List<Event> events, String keyword, String category, String location, String attendees){
+    /**
+     * @return the first instance of the event that starts after 'instant', overrides applied;
+     *         null if the event does not exist or has no later instance
+     */
+    public Occurrence nextOccurrenceAfter(int eventId, LocalDateTime instant){
+        CalendarSnapshot snapshot = fileManager.getRepository().snapshot();
+        Event base = snapshot.getEvent(eventId);
+        if (base == null) return null;
+        RecurrenceRule rule = snapshot.getRules().get(eventId);
+        if (rule == null){
+            return base.getStartDateTime().isAfter(instant) ? Occurrence.of(base) : null;
+        }
+        Map<Long, InstanceOverride> overrides = snapshot.getOverrides();
+
+        // first instance of the rule that has no override
+        Occurrence next = null;
+        RecurrenceManager.Cursor cursor = recurrenceManager.cursorAfter(base, rule, instant);
+        while (cursor.hasNext()){
+            long startMinute = cursor.next();
+            if (overrides.isEmpty() || !overrides.containsKey(InstanceOverride.key(eventId, startMinute))){
+                next = new Occurrence(base, startMinute, startMinute + cursor.getDurationMinutes());
+                break;
+            }
+        }
+        // a moved instance can come earlier
+        long afterMinute = Occurrence.toEpochMinute(instant);
+        for (InstanceOverride override : overrides.values()){
+            Occurrence moved = override.getEventId() == eventId ? override.toOccurrence() : null;
+            if (moved != null && moved.getStartMinute() > afterMinute
+                    && (next == null || moved.getStartMinute() < next.getStartMinute())
+                    && recurrenceManager.hasInstanceAt(base, rule, override.getOriginalStartMinute())){
+                next = moved;
+            }
+        }
+        return next;
+    }
+
+    public List<Occurrence> advanceFilter(List<Occurrence> events, String keyword, String category, String location, String attendees){
 
         String lowKeyword = keyword == null ? keyword = "" : keyword.toLowerCase().trim();
         String lowLocation = location == null ? location = "" : location.toLowerCase().trim();
         String lowAttendees = attendees == null ? attendees = "" : attendees.toLowerCase().trim();
 
+        // the text index narrows the events down to the few that can match,
+        // only those get their fields lowercased and scanned below
+        BitSet candidates = null;
+        if (!lowKeyword.isEmpty() || !lowLocation.isEmpty() || !lowAttendees.isEmpty()) {
+            TextIndex index = fileManager.getRepository().textIndex();
+            for (String text : new String[]{lowKeyword, lowLocation, lowAttendees}) {
+                BitSet found = index.candidates(text);
+                if (found == null) continue;
+                if (candidates == null) candidates = found;
+                else candidates.and(found);
+            }
+        }
+        BitSet narrowed = candidates;
+
         return events.stream().filter(e -> {
+            if (narrowed != null && !narrowed.get(e.getEventId())) return false;
             boolean matchesKeyword = (lowKeyword.isEmpty()
                     || e.getTitle().toLowerCase().contains(lowKeyword)
                     || e.getDescription().toLowerCase().contains(lowKeyword)
@@ -376,8 +376,9 @@ public class EventStatistic {
 
         // 2. Fetch Events
         EventSearcher searcher = new EventSearcher(fileManager, recurrenceManager);
-        List<Event> events = searcher.searchByDateRange(startDateTime, endDateTime);
-        List<Event> prevEvents = searcher.searchByDateRange(prevStartDateTime, prevEndDateTime);
+        List<Occurrence> events = searcher.searchByDateRange(startDateTime, endDateTime);
+        // the previous period only feeds the trend, counting its instances is enough
+        Map<Event, Long> prevCounts = searcher.countByDateRange(prevStartDateTime, prevEndDateTime);
 
         // 3. Process Data for Pie & Leaderboard
         Map<String, Long> categoryDuration = new HashMap<>(); 
@@ -386,15 +387,16 @@ public class EventStatistic {
         long totalMinutes = 0;
 
         // Current Period
-        for (Event e : events) {
-            long minutes = java.time.Duration.between(e.getStartDateTime(), e.getEndDateTime()).toMinutes();
+        for (Occurrence e : events) {
+            long minutes = e.getDurationMinutes();
             categoryDuration.merge(e.getCategory(), minutes, Long::sum);
             categoryCount.merge(e.getCategory(), 1L, Long::sum); // Increment count
             totalMinutes += minutes;
         }
         // Previous Period (for trend)
-        for(Event e : prevEvents) {
-            long minutes = java.time.Duration.between(e.getStartDateTime(), e.getEndDateTime()).toMinutes();
+        for(Map.Entry<Event, Long> entry : prevCounts.entrySet()) {
+            Event e = entry.getKey();
+            long minutes = Occurrence.of(e).getDurationMinutes() * entry.getValue();
             prevCategoryDuration.merge(e.getCategory(), minutes, Long::sum);
         }
 
@@ -556,9 +558,9 @@ public class EventStatistic {
             // X-Axis: Days of Week (Mon-Sun)
              // Need to ensure events are mapped to correct day
              Map<java.time.DayOfWeek, Long> daySums = new HashMap<>();
-             for (Event e : events) {
+             for (Occurrence e : events) {
                  java.time.DayOfWeek dw = e.getStartDateTime().getDayOfWeek();
-                 long dur = java.time.Duration.between(e.getStartDateTime(), e.getEndDateTime()).toMinutes();
+                 long dur = e.getDurationMinutes();
                  daySums.merge(dw, dur, Long::sum);
              }
              
@@ -581,9 +583,9 @@ public class EventStatistic {
         } else if (currentScope.equals("Month")) {
             // X-Axis: Days 1..31
             Map<Integer, Long> daySums = new HashMap<>();
-            for (Event e : events) {
+            for (Occurrence e : events) {
                  int day = e.getStartDateTime().getDayOfMonth();
-                 long dur = java.time.Duration.between(e.getStartDateTime(), e.getEndDateTime()).toMinutes();
+                 long dur = e.getDurationMinutes();
                  daySums.merge(day, dur, Long::sum);
             }
              int daysInMonth = selectedDate.lengthOfMonth();
@@ -602,9 +604,9 @@ public class EventStatistic {
         } else { // Year
             // X-Axis: Jan..Dec
             Map<java.time.Month, Long> monthSums = new HashMap<>();
-            for (Event e : events) {
+            for (Occurrence e : events) {
                  java.time.Month mo = e.getStartDateTime().getMonth();
-                 long dur = java.time.Duration.between(e.getStartDateTime(), e.getEndDateTime()).toMinutes();
+                 long dur = e.getDurationMinutes();
                  monthSums.merge(mo, dur, Long::sum);
             }
              for (java.time.Month mo : java.time.Month.values()) {
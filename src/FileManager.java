@@ -2,16 +2,33 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
+ * Reads and writes the calendar under data/: the month-partitioned store in
+ * data/store (month segments, recurring.csv, manifest.csv, ids.csv), the journal of
+ * recent changes and the instance overrides. Every event column, location, category
+ * and attendees included, is stored in the segment rows; the older layouts
+ * (calendar.csv, event.csv + additional.csv) are only read once to migrate them.
  *
  * @author User
  */
 public class FileManager {
     
     protected static final String FOLDER_NAME = "data";
+
+    // month-partitioned store (schema 3), see PartitionedStore
+    protected static final String STORE_DIR = FOLDER_NAME + File.separator + "store";
+    private final PartitionedStore store = new PartitionedStore(STORE_DIR);
+
+    // single-file store (schema 2), only read once by migrateToPartitions()
+    protected static final String STORE_FILE_PATH = FOLDER_NAME + File.separator + "calendar.csv";
+    // whole-calendar binary snapshot of schema 2, replaced by one per segment
+    private static final String OLD_SNAPSHOT_FILE_PATH = FOLDER_NAME + File.separator + "snapshot.bin";
+
+    // legacy layout (schema 1), only read once by migrateToPartitions(); the headers are still used by backup files
     protected static final String EVENT_FILE_PATH = FOLDER_NAME + File.separator + "event.csv";
     protected static final String RECURRENT_FILE_PATH = FOLDER_NAME + File.separator + "recurrent.csv";
     protected static final String EVENT_HEADER = "eventId,title,description,startDateTime,endDateTime,location,category,attendees";
@@ -19,147 +36,474 @@ public class FileManager {
 
     protected static final String ADDITIONAL_FILE_PATH = FOLDER_NAME + File.separator + "additional.csv";
     protected static final String ADDITIONAL_HEADER = "eventId,location,category,attendees";
-    private int maxEventId = 0;
+    private static final String LEGACY_SUFFIX = ".legacy";
+
+    protected static final String JOURNAL_FILE_PATH = FOLDER_NAME + File.separator + "journal.csv";
+    // fold the journal back into the segments once it holds this many records
+    private static final int JOURNAL_COMPACT_THRESHOLD = 200;
+    private final EventJournal journal = new EventJournal(JOURNAL_FILE_PATH);
+
+    // moved / cancelled instances of recurring events, see InstanceOverride
+    protected static final String OVERRIDES_FILE_PATH = FOLDER_NAME + File.separator + "overrides.csv";
+
+    // highest id handed out, the repository knows the highest one stored
+    private final AtomicInteger maxEventId = new AtomicInteger();
+
+    // single-record writes are queued here instead of blocking the caller
+    private final PersistenceService persistence = PersistenceService.shared();
+
+    // shared in-memory view of the files, see EventRepository
+    private final EventRepository repository;
 
 
     public FileManager(){
         ensureDataFolderExists();
+        // finish a save that was interrupted by a crash before reading anything
+        GroupCommitWriter.shared().recover();
+        store.ensureExists();
+        migrateToPartitions();
+        repository = new EventRepository(store, journal, JOURNAL_FILE_PATH, OVERRIDES_FILE_PATH);
     }
 
+    // readers should go through the repository instead of loadEvents()/loadRecurrentRules()
+    public EventRepository getRepository() {
+        return repository;
+    }
 
-    // Load events from CSV file
+    // called on clean shutdown: binary copies of the segments read in this session
+    public void writeSnapshot() {
+        for (Map.Entry<String, CalendarData> segment : repository.getLoadedSegments().entrySet()) {
+            store.writeSegmentSnapshot(segment.getKey(), segment.getValue());
+        }
+    }
+
+    // Load every event from the store (+ journal)
     public List<Event> loadEvents() {
+        // queued edits would be missing from the files otherwise
+        persistence.flush();
+        return readAll().getEvents();
+    }
 
-    // use LinkedHashMap to preserve the order in which they are saved
-    Map<Integer, Event> joinMap = new LinkedHashMap<>();
-
-    // 2. File Reading
-    try (BufferedReader br = new BufferedReader(new FileReader(EVENT_FILE_PATH))) {
-        br.readLine();
-        String line;
-        while((line=br.readLine())!=null){
-            if(!(line.trim()).isEmpty()){
-                Event e = new Event(line.split(","));
-
-                joinMap.put(e.getEventId(), e);
-                // update maxEventId while loading the file
-                if(e.getEventId() > maxEventId){
-                    maxEventId = e.getEventId();
+    public Map<Integer, RecurrenceRule> loadRecurrentRules(){
+        persistence.flush();
+        return readAll().getRules();
+    }
+
+    // every segment plus the journal, straight from disk
+    private CalendarData readAll() {
+        // use LinkedHashMap to preserve the order in which they are saved
+        Map<Integer, Event> events = new LinkedHashMap<>();
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        for (String key : store.readManifest().keySet()) {
+            CalendarData segment = store.readSegment(key);
+            for (Event e : segment.getEvents()) {
+                events.put(e.getEventId(), e);
+            }
+            rules.putAll(segment.getRules());
+        }
+        // apply single-record changes written after the last compaction
+        replayJournal(events, rules);
+        return new CalendarData(new ArrayList<>(events.values()), rules);
+    }
+
+    private void replayJournal(Map<Integer, Event> events, Map<Integer, RecurrenceRule> rules) {
+        for (EventJournal.Change change : journal.readChanges()) {
+            switch (change.getOp()) {
+                case EventJournal.PUT_EVENT -> {
+                    // remove first so an updated event moves to the end, same as the old removeIf + add
+                    events.remove(change.getEventId());
+                    events.put(change.getEventId(), change.getEvent());
                 }
+                case EventJournal.DELETE_EVENT -> events.remove(change.getEventId());
+                case EventJournal.PUT_RULE -> rules.put(change.getEventId(), change.getRule());
+                case EventJournal.DELETE_RULE -> rules.remove(change.getEventId());
             }
         }
-    
     }
-    // 3. Handle a missing file (Self-Healing file creation)
-    catch (FileNotFoundException e){
-        createEmptyFile(EVENT_FILE_PATH, EVENT_HEADER);// method below
-        return loadEvents();
+
+    // Save events, keeping the current recurrence rules
+    public void saveEvents(List<Event> events) {
+        saveCalendar(events, repository.getRules().values());
+    }
+
+    // Save rules, keeping the current events. Rules replace all existing ones.
+    public void saveRecurrenceRule(List<RecurrenceRule> rules) {
+        saveCalendar(repository.getEvents(), rules);
+    }
+
+    /**
+     * Replaces the whole store (events and rules) in one commit.
+     * Rules of events that are not in the list are dropped, they have nothing to repeat.
+     */
+    public void saveCalendar(List<Event> events, Collection<RecurrenceRule> rules) {
+        // let queued journal records land first, clearing the journal below would drop them
+        persistence.flush();
+        writeCalendar(events, rules);
+        repository.invalidate();
     }
-    catch (IOException e) {
-        System.err.println("Error reading file: " + e.getMessage());}
-    //read additional.csv
-    try (BufferedReader br = new BufferedReader(new FileReader(ADDITIONAL_FILE_PATH))){
-        br.readLine();
-        String line;
-        while((line = br.readLine())!= null){
-            if (line.trim().isEmpty()) {
-                continue;
-            }
 
-            String[] parts = line.split(",");
-            if (parts.length > 0) {
-                int id = Integer.parseInt(parts[0].trim());
+    // rewrites every segment, the manifest and the index
+    private boolean writeCalendar(List<Event> events, Collection<RecurrenceRule> ruleList) {
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        for (RecurrenceRule rule : ruleList) {
+            rules.put(rule.getEventId(), rule);
+        }
+        // one row per id, a later duplicate wins
+        Map<Integer, Event> byId = new LinkedHashMap<>();
+        for (Event e : events) {
+            byId.put(e.getEventId(), e);
+        }
+        Map<String, List<Event>> bySegment = new TreeMap<>();
+        Map<Integer, String> index = new LinkedHashMap<>();
+        for (Event e : byId.values()) {
+            String key = PartitionedStore.segmentOf(e, rules.containsKey(e.getEventId()));
+            bySegment.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+            index.put(e.getEventId(), key);
+        }
 
-                if (joinMap.containsKey(id)) {
-                    Event eventToUpdate = joinMap.get(id);
-                    eventToUpdate.setLocation(parts.length > 1 ? parts[1].trim() : "None");
-                    eventToUpdate.setCategory(parts.length > 2 ? parts[2].trim() : "General");
-                    eventToUpdate.setAttendees(parts.length > 3 ? parts[3].trim() : "None");
+        Map<Path, String> files = new LinkedHashMap<>();
+        Map<String, PartitionedStore.SegmentInfo> manifest = new TreeMap<>();
+        for (Map.Entry<String, List<Event>> segment : bySegment.entrySet()) {
+            manifest.put(segment.getKey(), store.addSegment(files, segment.getKey(), segment.getValue(), rules));
+        }
+        // the journal is cleared below, ids only it still knows of count too
+        Set<Integer> ids = new HashSet<>(byId.keySet());
+        for (EventJournal.Change change : journal.readChanges()) {
+            ids.add(change.getEventId());
+        }
+        store.addManifest(files, manifest.values(), highestEventId(ids));
+        store.addIndex(files, index);
+
+        if (!GroupCommitWriter.shared().commit(files)) {
+            System.err.println("Error writing to " + STORE_DIR + ", previous version kept.");
+            return false;
+        }
+        System.out.println("Events successfully saved to " + new File(STORE_DIR).getAbsolutePath());
+        // the full state is on disk now, older single-record changes are obsolete
+        journal.clear();
+        for (String key : store.listSegmentFiles()) {
+            if (manifest.containsKey(key)) {
+                store.discardSnapshot(key);
+            } else {
+                store.deleteSegment(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One-time conversion into the partitioned store, from either calendar.csv (schema 2)
+     * or event.csv + additional.csv + recurrent.csv (schema 1), journal included.
+     * The old files are kept as *.legacy next to it.
+     */
+    private void migrateToPartitions() {
+        if (store.exists()) {
+            return;
+        }
+        Map<Integer, Event> events = new LinkedHashMap<>();
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        String[] oldFiles;
+        if (Files.exists(Paths.get(STORE_FILE_PATH))) {
+            try {
+                CalendarData data = PartitionedStore.readRows(Paths.get(STORE_FILE_PATH));
+                for (Event e : data.getEvents()) {
+                    events.put(e.getEventId(), e);
                 }
+                rules.putAll(data.getRules());
+            } catch (IOException e) {
+                System.err.println("Unable to read " + STORE_FILE_PATH + ", will retry on next start: " + e.getMessage());
+                return;
             }
+            oldFiles = new String[]{STORE_FILE_PATH};
+        } else if (Files.exists(Paths.get(EVENT_FILE_PATH))) {
+            events = loadLegacyEvents();
+            rules = loadLegacyRules();
+            oldFiles = new String[]{EVENT_FILE_PATH, ADDITIONAL_FILE_PATH, RECURRENT_FILE_PATH};
+        } else {
+            // first start: an empty manifest
+            oldFiles = new String[0];
+        }
+        replayJournal(events, rules);
+        // also clears the journal, replaying it again after a crash here would be harmless anyway
+        if (!writeCalendar(new ArrayList<>(events.values()), rules.values())) {
+            System.err.println("Migration to " + STORE_DIR + " failed, will retry on next start.");
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(OLD_SNAPSHOT_FILE_PATH));
+        } catch (IOException e) {
+            System.err.println("Unable to delete old snapshot: " + e.getMessage());
+        }
+        for (String legacy : oldFiles) {
+            try {
+                Path path = Paths.get(legacy);
+                if (Files.exists(path)) {
+                    Files.move(path, Paths.get(legacy + LEGACY_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.err.println("Unable to rename " + legacy + ": " + e.getMessage());
+            }
+        }
+        if (oldFiles.length > 0) {
+            System.out.println("Migrated " + events.size() + " events to " + STORE_DIR);
         }
-    }catch (IOException e){
-        System.out.println("no additional data found.");
     }
-    return new ArrayList<>(joinMap.values());
+
+    private Map<Integer, Event> loadLegacyEvents() {
+        Map<Integer, Event> joinMap = new LinkedHashMap<>();
+        try {
+            CsvScanner scanner = CsvScanner.open(Paths.get(EVENT_FILE_PATH));
+            scanner.skipRecord(); // header
+            while (scanner.nextRecord()) {
+                try {
+                    Event e = Event.fromCsv(scanner);
+                    joinMap.put(e.getEventId(), e);
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in event.csv: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        }
+        // additional.csv overrides the extra columns, as the old loader did
+        try {
+            CsvScanner scanner = CsvScanner.open(Paths.get(ADDITIONAL_FILE_PATH));
+            scanner.skipRecord(); // header
+            while (scanner.nextRecord()) {
+                try {
+                    Event eventToUpdate = joinMap.get(scanner.intField());
+                    if (eventToUpdate != null) {
+                        eventToUpdate.setLocation(scanner.hasMoreFields() ? scanner.stringField().trim() : "None");
+                        eventToUpdate.setCategory(scanner.hasMoreFields() ? scanner.stringField().trim() : "General");
+                        eventToUpdate.setAttendees(scanner.hasMoreFields() ? scanner.stringField().trim() : "None");
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in additional.csv: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("no additional data found.");
+        }
+        return joinMap;
     }
 
-    public Map<Integer, RecurrenceRule> loadRecurrentRules(){
+    private Map<Integer, RecurrenceRule> loadLegacyRules() {
         Map<Integer, RecurrenceRule> rules = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(RECURRENT_FILE_PATH))) {
-            br.readLine(); // read header (ignored)
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    String[] data = line.split(",");
-                    int Id = Integer.parseInt(data[0].trim());
-                    String interval = data[1].trim();
-                    int times = Integer.parseInt(data[2].trim());
-                    LocalDateTime endDate = data[3].trim().equals("0") ? null : LocalDateTime.parse(data[3]);
+        try {
+            CsvScanner scanner = CsvScanner.open(Paths.get(RECURRENT_FILE_PATH));
+            scanner.skipRecord(); // read header (ignored)
+            while (scanner.nextRecord()) {
+                try {
+                    int Id = scanner.intField();
+                    String interval = scanner.stringField().trim();
+                    int times = scanner.intField();
+                    String rawEndDate = scanner.stringField().trim();
+                    LocalDateTime endDate = rawEndDate.equals("0") ? null : LocalDateTime.parse(rawEndDate);
                     rules.put(Id, new RecurrenceRule(Id, interval, times, endDate));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in recurrent.csv: " + e.getMessage());
                 }
             }
-        }catch (FileNotFoundException e){
-            createEmptyFile(RECURRENT_FILE_PATH, RECURRENT_HEADER);
-            return loadRecurrentRules();
-
-        }catch (IOException e){
-            System.err.println("Error loading recurrent.csv: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("no recurrence data found.");
         }
-
         return rules;
     }
 
-    // Save events to CSV file
-    public void saveEvents(List<Event> events) {
-        File file = new File(EVENT_FILE_PATH);
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+    // ---- single-record changes: memory is updated at once, the journal line is written in the background ----
 
-            pw.println(EVENT_HEADER);
+    // create or update one event
+    public void saveEvent(Event event) {
+        repository.putEvent(event);
+        String payload = event.toCsvString();
+        // a later change of the same event replaces this one if it is still queued
+        persistence.submit("event:" + event.getEventId(), () -> appendJournal(EventJournal.PUT_EVENT, payload));
+    }
 
-            for (Event event: events){
-                pw.println(event.toCsvString()); //toCsvString() method in Event.java
-            }
-            System.out.println("Events successfully saved to " + file.getAbsolutePath());
+    public void deleteEvent(int eventId) {
+        repository.removeEvent(eventId);
+        persistence.submit("event:" + eventId, () -> appendJournal(EventJournal.DELETE_EVENT, String.valueOf(eventId)));
+        removeOverrides(eventId);
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error writing to " + file.getAbsolutePath() + ": " + e.getMessage());
+    // create or replace the rule of one event
+    public void saveRule(RecurrenceRule rule) {
+        repository.putRule(rule);
+        String payload = rule.toCsvR();
+        persistence.submit("rule:" + rule.getEventId(), () -> appendJournal(EventJournal.PUT_RULE, payload));
+    }
+
+    // the event stays as a single event; its instance overrides go with the rule,
+    // so they do not come back if the event is made recurring again
+    public void deleteRule(int eventId) {
+        repository.removeRule(eventId);
+        persistence.submit("rule:" + eventId, () -> appendJournal(EventJournal.DELETE_RULE, String.valueOf(eventId)));
+        removeOverrides(eventId);
+    }
+
+    // move, change or cancel one instance of a recurring event
+    public void saveOverride(InstanceOverride override) {
+        repository.putOverride(override);
+        // the file is small and rewritten whole, only the latest state matters
+        persistence.submit("overrides", this::writeOverrides);
+    }
+
+    private void removeOverrides(int eventId) {
+        if (hasOverrides(eventId)) {
+            repository.removeOverrides(eventId);
+            persistence.submit("overrides", this::writeOverrides);
         }
+    }
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(ADDITIONAL_FILE_PATH))){
-            pw.println(ADDITIONAL_HEADER);
-            for (Event e: events){
-                pw.println(e.toAdditionalCsv()); // method inside Event.java
+    private boolean hasOverrides(int eventId) {
+        for (InstanceOverride override : repository.snapshot().getOverrides().values()) {
+            if (override.getEventId() == eventId) {
+                return true;
             }
-        }catch (IOException e){
-            System.out.println("Fail to save to additional.csv");
         }
+        return false;
+    }
 
+    // runs on the writer thread, writes what the repository holds at that time
+    private void writeOverrides() {
+        String content = InstanceOverride.fileContent(repository.snapshot().getOverrides().values());
+        if (GroupCommitWriter.shared().commit(Map.of(Paths.get(OVERRIDES_FILE_PATH), content))) {
+            repository.acknowledgeWrite();
+        } else {
+            System.err.println("Error saving " + OVERRIDES_FILE_PATH + ", previous version kept.");
+        }
+    }
 
+    // runs on the writer thread
+    private void appendJournal(String op, String payload) {
+        journal.append(op, payload);
+        if (journal.size() >= JOURNAL_COMPACT_THRESHOLD) {
+            compactSegments();
+        } else {
+            // the repository already holds this change, no reload needed
+            repository.acknowledgeWrite();
+        }
     }
-    public void saveRecurrenceRule(List<RecurrenceRule> rules) {
-        File file = new File(RECURRENT_FILE_PATH);
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
-
-            pw.println(RECURRENT_HEADER);
-
-            for (RecurrenceRule rule : rules) {
-                String recurrentEndDate = (rule.getRecurrentEndDate() == null)
-                        ? "0" : rule.getRecurrentEndDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"));
-
-                String line = (String.format(("%d,%s,%d,%s"),
-                        rule.getEventId(),
-                        rule.getRecurrentInterval(),
-                        rule.getRecurrentTimes(),
-                        recurrentEndDate)
-                );
-                pw.println(line);
+
+    /**
+     * Folds the journal into the segments.
+     */
+    public void compactJournal() {
+        persistence.flush();
+        if (journal.size() == 0) {
+            return;
+        }
+        compactSegments();
+    }
+
+    /**
+     * Rewrites only the segments the journal touches: the one an event leaves
+     * (edited to another month, deleted, got or lost a rule) and the one it moves to,
+     * plus the manifest and the id index.
+     */
+    private void compactSegments() {
+        Map<String, PartitionedStore.SegmentInfo> manifest = store.readManifest();
+        Map<Integer, String> index = store.readIndex();
+
+        // net effect of the journal, null = deleted
+        Map<Integer, Event> changedEvents = new LinkedHashMap<>();
+        Map<Integer, RecurrenceRule> changedRules = new HashMap<>();
+        for (EventJournal.Change change : journal.readChanges()) {
+            switch (change.getOp()) {
+                case EventJournal.PUT_EVENT -> {
+                    changedEvents.remove(change.getEventId());
+                    changedEvents.put(change.getEventId(), change.getEvent());
+                }
+                case EventJournal.DELETE_EVENT -> changedEvents.put(change.getEventId(), null);
+                case EventJournal.PUT_RULE -> changedRules.put(change.getEventId(), change.getRule());
+                case EventJournal.DELETE_RULE -> changedRules.put(change.getEventId(), null);
             }
-            System.out.println("Events successfully saved to " + file.getAbsolutePath());
+        }
 
-        } catch (IOException e) {
-            System.err.println("Error writing to " + file.getAbsolutePath() + ": " + e.getMessage());
+        // rules are stored in the recurring segment, so it is always part of the compaction
+        Map<String, CalendarData> oldSegments = new HashMap<>();
+        CalendarData recurring = store.readSegment(PartitionedStore.RECURRING);
+        oldSegments.put(PartitionedStore.RECURRING, recurring);
+        Map<Integer, RecurrenceRule> rules = new HashMap<>(recurring.getRules());
+        for (Map.Entry<Integer, RecurrenceRule> change : changedRules.entrySet()) {
+            if (change.getValue() == null) {
+                rules.remove(change.getKey());
+            } else {
+                rules.put(change.getKey(), change.getValue());
+            }
+        }
+
+        Set<Integer> touched = new LinkedHashSet<>(changedEvents.keySet());
+        touched.addAll(changedRules.keySet());
+        Map<String, Map<Integer, Event>> rewritten = new TreeMap<>();
+        rewritten.put(PartitionedStore.RECURRING, eventsById(recurring));
+        for (int id : touched) {
+            String oldKey = index.get(id);
+            if (oldKey != null && !rewritten.containsKey(oldKey)) {
+                CalendarData old = store.readSegment(oldKey);
+                oldSegments.put(oldKey, old);
+                rewritten.put(oldKey, eventsById(old));
+            }
+        }
+        for (int id : touched) {
+            String oldKey = index.get(id);
+            Event current = oldKey == null ? null : rewritten.get(oldKey).remove(id);
+            if (changedEvents.containsKey(id)) {
+                current = changedEvents.get(id);
+            }
+            if (current == null) {
+                index.remove(id);
+                continue;
+            }
+            String key = PartitionedStore.segmentOf(current, rules.containsKey(id));
+            rewritten.computeIfAbsent(key, k -> {
+                CalendarData old = store.readSegment(k);
+                oldSegments.put(k, old);
+                return eventsById(old);
+            }).put(id, current);
+            index.put(id, key);
+        }
+
+        Map<Path, String> files = new LinkedHashMap<>();
+        Map<String, PartitionedStore.SegmentInfo> newManifest = new TreeMap<>(manifest);
+        List<String> emptied = new ArrayList<>();
+        for (Map.Entry<String, Map<Integer, Event>> segment : rewritten.entrySet()) {
+            PartitionedStore.SegmentInfo info = store.addSegment(files, segment.getKey(), segment.getValue().values(), rules);
+            if (info == null) {
+                newManifest.remove(segment.getKey());
+                emptied.add(segment.getKey());
+            } else {
+                newManifest.put(segment.getKey(), info);
+            }
+        }
+        // deleted ids included, they are gone from the index now
+        Set<Integer> ids = new HashSet<>(index.keySet());
+        ids.addAll(changedEvents.keySet());
+        store.addManifest(files, newManifest.values(), highestEventId(ids));
+        store.addIndex(files, index);
+
+        repository.compact(oldSegments, newManifest, index, changedEvents, () -> {
+            if (GroupCommitWriter.shared().commit(files)) {
+                journal.clear();
+                for (String key : rewritten.keySet()) {
+                    store.discardSnapshot(key);
+                }
+                for (String key : emptied) {
+                    store.deleteSegment(key);
+                }
+                return true;
+            }
+            System.err.println("Journal compaction failed, keeping the journal.");
+            return false;
+        });
+    }
+
+    private static Map<Integer, Event> eventsById(CalendarData segment) {
+        Map<Integer, Event> byId = new LinkedHashMap<>();
+        for (Event e : segment.getEvents()) {
+            byId.put(e.getEventId(), e);
         }
+        return byId;
     }
 
 
@@ -178,18 +522,6 @@ public class FileManager {
             }
         }return true;
 }
-        // general file creation
-        private void createEmptyFile(String path, String header) {
-
-            try(PrintWriter pw = new PrintWriter(new FileWriter(path))){
-                
-                pw.println(header);
-                System.out.println("Created new, empty event file at: "+ path);
-                
-            }catch (IOException e){
-                System.err.println("Unable to create a new event file: "+e.getMessage());
-            }
-        }
 
          public Map<Integer, Integer> mergeAndSaveBackup(List<String> backupEventLines) {
             Map<Integer, Integer> idMap = new HashMap<>();
@@ -202,7 +534,7 @@ public class FileManager {
 
                 if (line.contains("title")) continue;
                 // use constructor
-                Event backupEvent = new Event(line.split(","));
+                Event backupEvent = new Event(CsvScanner.splitLine(line));
 
                 int oldId = backupEvent.getEventId();
 
@@ -276,46 +608,53 @@ public class FileManager {
     }
 
     public void appendAdditional(List<String> backupAdditionalLine, Map<Integer, Integer> idMap) {
-        List<String> currentLines = new ArrayList<>();
-        File additionalFile = new File(ADDITIONAL_FILE_PATH);
-
-        if (additionalFile.exists()){
-            try{
-                currentLines = Files.readAllLines(additionalFile.toPath());
-            }catch (IOException e){
-                System.err.println("Error reading existing additional fields: " + e.getMessage());
-            }
-        }
-
-        if (currentLines.isEmpty()){
-            currentLines.add(ADDITIONAL_HEADER);
+        // the extra columns are stored with the events in the segments now, so patch the events directly
+        List<Event> currentEvents = loadEvents();
+        Map<Integer, Event> byId = new HashMap<>();
+        for (Event e : currentEvents) {
+            byId.put(e.getEventId(), e);
         }
 
+        boolean changed = false;
         for(String line : backupAdditionalLine){
-            String[] parts = line.split(",");
+            String[] parts = CsvScanner.splitLine(line);
             try {
                 int oldId = Integer.parseInt(parts[0].trim());
 
                 if (idMap.containsKey(oldId)){
-                    // reconstruct the line with new ID
-                    // parts[1...n] are additional fields
-                    int newId = idMap.get(oldId);
-                    StringBuilder newLine = new StringBuilder(String.valueOf(newId));
-                    for(int i = 1; i<parts.length; i++){
-                        newLine.append(",").append(parts[i]);
+                    Event event = byId.get(idMap.get(oldId));
+                    if (event != null) {
+                        // parts[1...3] are location, category, attendees
+                        event.setLocation(parts.length > 1 ? parts[1].trim() : "None");
+                        event.setCategory(parts.length > 2 ? parts[2].trim() : "General");
+                        event.setAttendees(parts.length > 3 ? parts[3].trim() : "None");
+                        changed = true;
                     }
-                    currentLines.add(newLine.toString());
-
                 }
             }catch (NumberFormatException e){
                 // skip lines that aren't valid data (empty lines)
                 continue;
             }
         }
+        if (changed) {
+            saveEvents(currentEvents);
+        }
     }
+    // the mark to store: never lower than the stored one or any id handed out in this session
+    private int highestEventId(Collection<Integer> ids) {
+        int max = Math.max(store.readMaxEventId(), maxEventId.get());
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        return max;
+    }
+
         // Find the next available event ID
         public int getNextAvailableEventId() {
-            return ++maxEventId;
+            // ids are never reused, even after the event with the highest id was deleted
+            int stored = repository.getMaxEventId();
+            // one atomic step, the FX thread and the writer thread never get the same id
+            return maxEventId.updateAndGet(handedOut -> Math.max(handedOut, stored) + 1);
         }
 
-}        
\ No newline at end of file
+}
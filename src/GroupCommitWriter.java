@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Crash-safe, all-or-nothing replacement of several data files at once
+ * (store segments + manifest + id index, reminder.csv).
+ *
+ * One commit:
+ *  1. writes every file to "name.tmp" and fsyncs it and its directory
+ *  2. writes and fsyncs an intent file listing the renames
+ *  3. renames every temp file over its target (atomic move) and fsyncs the
+ *     directory of every target, so the renames are on disk before...
+ *  4. ...the intent file is deleted
+ * If the app dies after step 2, recover() finishes the renames on the next start;
+ * before step 2 the old files are untouched and the stray temp files are simply overwritten later.
+ * A rename that fails in step 3 is retried once right away; if it still fails the
+ * intent file stays and recover() finishes the commit on the next start.
+ *
+ * Group commit: requests arriving within COMMIT_WINDOW_MS of each other are
+ * merged into one commit (the later content of the same file wins), so a burst
+ * of saves costs one round of fsyncs.
+ */
+public class GroupCommitWriter {
+    private static final long COMMIT_WINDOW_MS = 15;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final GroupCommitWriter SHARED =
+            new GroupCommitWriter(Paths.get(FileManager.FOLDER_NAME, "commit.pending"));
+
+    private final Path intentFile;
+
+    // guards 'collecting'
+    private final Object batchLock = new Object();
+    // only one commit touches the disk at a time, in arrival order
+    private final Object writeLock = new Object();
+    private Batch collecting;
+
+    // the renames started but did not all go through; the intent file is left for recover()
+    private static class IncompleteCommitException extends IOException {
+        IncompleteCommitException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private static class Batch {
+        final Map<Path, String> files = new LinkedHashMap<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean success;
+    }
+
+    public GroupCommitWriter(Path intentFile) {
+        this.intentFile = intentFile;
+    }
+
+    // every data file shares one writer so their commits can be grouped
+    public static GroupCommitWriter shared() {
+        return SHARED;
+    }
+
+    /**
+     * Replaces the given files with the given contents as one unit.
+     * Blocks until the data is on disk.
+     * @return false if the commit failed: either the old files are still intact, or
+     *         (logged as incomplete) it is finished by recover() on the next start
+     */
+    public boolean commit(Map<Path, String> files) {
+        Batch batch;
+        boolean leader = false;
+        synchronized (batchLock) {
+            if (collecting == null) {
+                collecting = new Batch();
+                leader = true;
+            }
+            batch = collecting;
+            batch.files.putAll(files);
+        }
+
+        if (!leader) {
+            // the leader of this batch writes our files too
+            try {
+                batch.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return batch.success;
+        }
+
+        try {
+            // give concurrent saves a moment to join this batch
+            Thread.sleep(COMMIT_WINDOW_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            synchronized (batchLock) {
+                // close the batch, later requests start a new one
+                collecting = null;
+            }
+            try {
+                writeAtomically(batch.files);
+                batch.success = true;
+            } catch (IncompleteCommitException e) {
+                System.err.println("Commit incomplete, some files are already replaced; it will be finished on the next start: "
+                        + e.getMessage());
+                batch.success = false;
+            } catch (IOException e) {
+                System.err.println("Commit failed, previous files kept: " + e.getMessage());
+                batch.success = false;
+            } finally {
+                batch.done.countDown();
+            }
+        }
+        return batch.success;
+    }
+
+    /**
+     * Finishes or rolls back a commit interrupted by a crash.
+     * Called once at start-up before anything reads the data files.
+     */
+    public void recover() {
+        synchronized (writeLock) {
+            try {
+                if (Files.exists(intentFile)) {
+                    // every temp file was fsynced before the intent was written: roll forward
+                    List<Path> targets = new ArrayList<>();
+                    for (String line : Files.readAllLines(intentFile, StandardCharsets.UTF_8)) {
+                        if (line.isBlank()) continue;
+                        targets.add(Paths.get(line));
+                    }
+                    rollForward(targets);
+                    Files.delete(intentFile);
+                    System.out.println("Recovered an interrupted save.");
+                }
+            } catch (IOException e) {
+                System.err.println("Unable to recover interrupted save: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeAtomically(Map<Path, String> files) throws IOException {
+        List<Path> targets = new ArrayList<>(files.keySet());
+        try {
+            for (Path target : targets) {
+                writeAndSync(tempOf(target), files.get(target).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            // nothing was renamed yet, drop the partial temp files
+            for (Path target : targets) {
+                Files.deleteIfExists(tempOf(target));
+            }
+            throw e;
+        }
+
+        // the temp files have to survive a crash once the intent points at them
+        syncDirectories(targets);
+
+        StringBuilder intent = new StringBuilder();
+        for (Path target : targets) {
+            intent.append(target).append(System.lineSeparator());
+        }
+        writeAndSync(intentFile, intent.toString().getBytes(StandardCharsets.UTF_8));
+        syncDirectory(intentFile.toAbsolutePath().getParent());
+
+        try {
+            rollForward(targets);
+        } catch (IOException first) {
+            // some targets may be replaced already, there is no going back: finish the rest
+            try {
+                rollForward(targets);
+            } catch (IOException again) {
+                throw new IncompleteCommitException(again);
+            }
+        }
+        Files.delete(intentFile);
+    }
+
+    /**
+     * Moves every temp file that is still there over its target, then makes the
+     * renames durable. The intent file may only be deleted after this returned.
+     */
+    private static void rollForward(List<Path> targets) throws IOException {
+        for (Path target : targets) {
+            Path temp = tempOf(target);
+            if (Files.exists(temp)) {
+                move(temp, target);
+            }
+        }
+        syncDirectories(targets);
+    }
+
+    // every directory holding one of the targets (data/, data/store/), each once
+    private static void syncDirectories(List<Path> targets) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (Path target : targets) {
+            dirs.add(target.toAbsolutePath().getParent());
+        }
+        for (Path dir : dirs) {
+            syncDirectory(dir);
+        }
+    }
+
+    private static void writeAndSync(Path path, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // makes the renames durable; not supported on every platform (e.g. Windows), which is fine
+    private static void syncDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // best effort
+        }
+    }
+
+    private static Path tempOf(Path target) {
+        return target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+    }
+}
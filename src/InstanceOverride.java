@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exception to one instance of a recurring series: the instance that originally
+ * starts at originalStartMinute is either cancelled or replaced by another event
+ * (moved, retitled, ...). The replacement keeps the eventId of the series.
+ *
+ * Overrides are looked up by key(eventId, originalStartMinute) while a rule is
+ * expanded, see RecurrenceManager.generateOccurrences().
+ *
+ * Stored in data/overrides.csv:
+ *   eventId,originalStart,cancelled,title,description,startDateTime,endDateTime,location,category,attendees
+ * where the event columns are empty for a cancelled instance.
+ */
+public final class InstanceOverride {
+    static final String HEADER = "eventId,originalStart,cancelled,title,description,startDateTime,endDateTime,location,category,attendees";
+
+    private final int eventId;
+    private final long originalStartMinute;
+    // null = the instance is cancelled
+    private final Event replacement;
+
+    public InstanceOverride(int eventId, long originalStartMinute, Event replacement) {
+        this.eventId = eventId;
+        this.originalStartMinute = originalStartMinute;
+        this.replacement = replacement;
+    }
+
+    public static InstanceOverride cancelled(int eventId, long originalStartMinute) {
+        return new InstanceOverride(eventId, originalStartMinute, null);
+    }
+
+    // eventId in the high half, the start minute in the low half (good for +-4000 years)
+    public static long key(int eventId, long originalStartMinute) {
+        return ((long) eventId << 32) | (originalStartMinute & 0xFFFFFFFFL);
+    }
+
+    public long getKey() {
+        return key(eventId, originalStartMinute);
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public long getOriginalStartMinute() {
+        return originalStartMinute;
+    }
+
+    public boolean isCancelled() {
+        return replacement == null;
+    }
+
+    public Event getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * @return the replacement as an instance of the series, null when cancelled
+     */
+    public Occurrence toOccurrence() {
+        if (replacement == null) {
+            return null;
+        }
+        return new Occurrence(replacement, Occurrence.toEpochMinute(replacement.getStartDateTime()),
+                Occurrence.toEpochMinute(replacement.getEndDateTime()), originalStartMinute);
+    }
+
+    public String toCsv() {
+        String head = eventId + "," + Occurrence.fromEpochMinute(originalStartMinute) + ",";
+        if (replacement == null) {
+            return head + "true,,,,,,,";
+        }
+        // toCsvString() without its leading eventId
+        String eventCsv = replacement.toCsvString();
+        return head + "false," + eventCsv.substring(eventCsv.indexOf(',') + 1);
+    }
+
+    /**
+     * @return overrides of the file by key; a missing file has none
+     */
+    public static Map<Long, InstanceOverride> readFile(Path path) {
+        Map<Long, InstanceOverride> overrides = new HashMap<>();
+        try {
+            CsvScanner scanner = CsvScanner.open(path);
+            scanner.skipRecord(); // header
+            while (scanner.nextRecord()) {
+                try {
+                    int eventId = scanner.intField();
+                    long original = Occurrence.toEpochMinute(scanner.dateTimeField());
+                    boolean cancelled = Boolean.parseBoolean(scanner.stringField().trim());
+                    Event replacement = null;
+                    if (!cancelled) {
+                        String title = scanner.stringField();
+                        String description = scanner.stringField();
+                        replacement = new Event(eventId, title, description, scanner.dateTimeField(), scanner.dateTimeField(),
+                                scanner.stringField().trim(), scanner.stringField().trim(), scanner.stringField().trim());
+                    }
+                    InstanceOverride override = new InstanceOverride(eventId, original, replacement);
+                    overrides.put(override.getKey(), override);
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in " + path.getFileName() + ": " + e.getMessage());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no overrides yet
+        } catch (IOException e) {
+            System.err.println("Error reading " + path.getFileName() + ": " + e.getMessage());
+        }
+        return overrides;
+    }
+
+    public static String fileContent(Collection<InstanceOverride> overrides) {
+        StringBuilder csv = new StringBuilder(overrides.size() * 96 + 128);
+        csv.append(HEADER).append(System.lineSeparator());
+        for (InstanceOverride override : overrides) {
+            csv.append(override.toCsv()).append(System.lineSeparator());
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Overlap index over a fixed set of events (one store segment, or the journal overlay).
+ *
+ * The events are kept sorted by start, and the sorted array is read as an implicit
+ * balanced tree: the node of range [lo, hi) is its middle element, and maxEnd[mid]
+ * is the latest end inside that range. A query skips every subtree whose maxEnd is
+ * not after the window start, and everything right of the first start that is not
+ * before the window end, so it costs O(log n + k) and visits the matches in start order.
+ *
+ * The index is immutable; a changed segment or overlay gets a new one.
+ * Times are epoch minutes, see Occurrence.
+ */
+public final class IntervalIndex {
+    public static final IntervalIndex EMPTY = new IntervalIndex(List.of());
+
+    private final Event[] events;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnd;
+
+    public IntervalIndex(Collection<Event> source) {
+        int n = source.size();
+        events = new Event[n];
+        starts = new long[n];
+        ends = new long[n];
+        maxEnd = new long[n];
+
+        long[][] keyed = new long[n][];
+        Event[] unsorted = source.toArray(new Event[0]);
+        for (int i = 0; i < n; i++) {
+            // {start, end, position in source}; ties keep the source order
+            keyed[i] = new long[]{Occurrence.toEpochMinute(unsorted[i].getStartDateTime()),
+                    Occurrence.toEpochMinute(unsorted[i].getEndDateTime()), i};
+        }
+        Arrays.sort(keyed, Comparator.<long[]>comparingLong(k -> k[0]).thenComparingLong(k -> k[2]));
+        for (int i = 0; i < n; i++) {
+            starts[i] = keyed[i][0];
+            ends[i] = keyed[i][1];
+            events[i] = unsorted[(int) keyed[i][2]];
+        }
+        buildMaxEnd(0, n);
+    }
+
+    public int size() {
+        return events.length;
+    }
+
+    /**
+     * Adds to out every event with start < toMinute and end > fromMinute that
+     * passes the filter, in start order.
+     */
+    public void query(long fromMinute, long toMinute, Predicate<Event> filter, List<Occurrence> out) {
+        query(0, events.length, fromMinute, toMinute, filter, out);
+    }
+
+    private void query(int lo, int hi, long fromMinute, long toMinute, Predicate<Event> filter, List<Occurrence> out) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            // nothing in this range ends after the window start
+            if (maxEnd[mid] <= fromMinute) {
+                return;
+            }
+            query(lo, mid, fromMinute, toMinute, filter, out);
+            // this one and everything right of it start too late
+            if (starts[mid] >= toMinute) {
+                return;
+            }
+            if (ends[mid] > fromMinute && filter.test(events[mid])) {
+                out.add(new Occurrence(events[mid], starts[mid], ends[mid]));
+            }
+            // right half as a loop instead of a second recursive call
+            lo = mid + 1;
+        }
+    }
+
+    private long buildMaxEnd(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnd(lo, mid), buildMaxEnd(mid + 1, hi)));
+        maxEnd[mid] = max;
+        return max;
+    }
+}
@@ -0,0 +1,106 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One instance of an event inside a search window, as returned by EventSearcher.
+ *
+ * Only the instance times are stored, as epoch minutes of the local date-time
+ * (same encoding as SnapshotStore). Every other field is read from the base event,
+ * so expanding a daily rule over a year costs one small object per instance
+ * instead of a full Event copy plus two LocalDateTime.
+ * Non-recurring events are wrapped as-is and return the base event's exact times.
+ * An instance replaced by an InstanceOverride has the replacement as its base and
+ * remembers where the series originally put it.
+ */
+public final class Occurrence {
+    private final Event base;
+    private final long startMinute;
+    private final long endMinute;
+    // start given by the rule, differs from startMinute for a moved instance
+    private final long originalStartMinute;
+
+    public Occurrence(Event base, long startMinute, long endMinute) {
+        this(base, startMinute, endMinute, startMinute);
+    }
+
+    public Occurrence(Event base, long startMinute, long endMinute, long originalStartMinute) {
+        this.base = base;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+        this.originalStartMinute = originalStartMinute;
+    }
+
+    // the base event itself (no recurrence)
+    public static Occurrence of(Event base) {
+        return new Occurrence(base, toEpochMinute(base.getStartDateTime()), toEpochMinute(base.getEndDateTime()));
+    }
+
+    public Event getBase() { return base; }
+    public long getStartMinute() { return startMinute; }
+    public long getEndMinute() { return endMinute; }
+    public long getDurationMinutes() { return endMinute - startMinute; }
+    // key of this instance for InstanceOverride
+    public long getOriginalStartMinute() { return originalStartMinute; }
+
+    // fields shared with the base event, the getter names match Event (TableView columns use them)
+    public int getEventId() { return base.getEventId(); }
+    public String getTitle() { return base.getTitle(); }
+    public String getDescription() { return base.getDescription(); }
+    public String getLocation() { return base.getLocation(); }
+    public String getCategory() { return base.getCategory(); }
+    public String getAttendees() { return base.getAttendees(); }
+
+    // the LocalDateTime is only built when asked for (display, reminders)
+    public LocalDateTime getStartDateTime() {
+        LocalDateTime baseStart = base.getStartDateTime();
+        return toEpochMinute(baseStart) == startMinute ? baseStart : fromEpochMinute(startMinute);
+    }
+
+    public LocalDateTime getEndDateTime() {
+        LocalDateTime baseEnd = base.getEndDateTime();
+        return toEpochMinute(baseEnd) == endMinute ? baseEnd : fromEpochMinute(endMinute);
+    }
+
+    // (start < to) and (end > from), both in epoch minutes
+    public boolean overlaps(long fromMinute, long toMinute) {
+        return startMinute < toMinute && endMinute > fromMinute;
+    }
+
+    /**
+     * @return both lists (each sorted by start) merged into one, in start order;
+     *         on equal starts the element of 'first' comes first
+     */
+    public static List<Occurrence> merge(List<Occurrence> first, List<Occurrence> second) {
+        if (second.isEmpty()) return first;
+        if (first.isEmpty()) return second;
+        List<Occurrence> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0, j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.get(j).startMinute < first.get(i).startMinute) {
+                merged.add(second.get(j++));
+            } else {
+                merged.add(first.get(i++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    /**
+     * @return a standalone Event with this instance's times, for the edit dialog
+     */
+    public Event toEvent() {
+        return new Event(base, getStartDateTime(), getEndDateTime());
+    }
+
+    public static long toEpochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    public static LocalDateTime fromEpochMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+}
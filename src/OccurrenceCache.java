@@ -0,0 +1,96 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Expanded instance starts of recurring events, one bucket per (event, month),
+ * shared by every RecurrenceManager. Moving back and forth between months, or
+ * searching overlapping windows, expands each month of a series only once.
+ *
+ * A bucket remembers the base event and the rule it was expanded from and is only
+ * used while the snapshot still holds those exact objects. Any edit of the event or
+ * its rule (or a reload from disk) creates new objects, so a changed series misses
+ * without anyone having to invalidate it; the stale bucket is replaced or ages out.
+ *
+ * Least recently used buckets are dropped beyond MAX_BUCKETS.
+ */
+public final class OccurrenceCache {
+    // a daily rule needs 31 longs per bucket, so this stays around a megabyte
+    static final int MAX_BUCKETS = 4096;
+
+    private static final OccurrenceCache SHARED = new OccurrenceCache(MAX_BUCKETS);
+
+    private final Map<Long, Bucket> buckets;
+    private long hits;
+    private long misses;
+
+    /**
+     * Instance starts (epoch minutes) of one series inside one month, EXDATEs left out.
+     * Overrides are not applied here, they change more often than the series.
+     */
+    static final class Bucket {
+        final Event base;
+        final RecurrenceRule rule;
+        final long[] starts;
+        // first start after this month, Long.MAX_VALUE when the series ends here
+        final long nextStart;
+
+        Bucket(Event base, RecurrenceRule rule, long[] starts, long nextStart) {
+            this.base = base;
+            this.rule = rule;
+            this.starts = starts;
+            this.nextStart = nextStart;
+        }
+    }
+
+    OccurrenceCache(int maxBuckets) {
+        // access order: get() moves a bucket to the end, the eldest is the least recently used
+        this.buckets = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Bucket> eldest) {
+                return size() > maxBuckets;
+            }
+        };
+    }
+
+    public static OccurrenceCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the bucket of this month if it was expanded from these exact objects, else null
+     */
+    synchronized Bucket get(Event base, RecurrenceRule rule, int month) {
+        Bucket bucket = buckets.get(key(base.getEventId(), month));
+        if (bucket != null && bucket.base == base && bucket.rule == rule) {
+            hits++;
+            return bucket;
+        }
+        misses++;
+        return null;
+    }
+
+    synchronized void put(int month, Bucket bucket) {
+        buckets.put(key(bucket.base.getEventId(), month), bucket);
+    }
+
+    public synchronized void clear() {
+        buckets.clear();
+    }
+
+    public synchronized int size() {
+        return buckets.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // month = year * 12 + month of year - 1, see RecurrenceManager
+    private static long key(int eventId, int month) {
+        return ((long) eventId << 32) | (month & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sources that are each sorted by start into one sequence sorted by start.
+ *
+ * Only the current head of every source is held, in a priority queue, so memory is
+ * O(sources) and the first result is ready after one element per source was read.
+ * The caller stops whenever it has enough (agenda, first conflict, end of a window).
+ * On equal starts the source given first comes first.
+ */
+public final class OccurrenceStream implements Iterator<Occurrence> {
+    private static final Comparator<Head> ORDER =
+            Comparator.<Head>comparingLong(h -> h.current.getStartMinute()).thenComparingInt(h -> h.order);
+
+    private final PriorityQueue<Head> heads;
+
+    private static final class Head {
+        private final Iterator<Occurrence> source;
+        private final int order;
+        private Occurrence current;
+
+        Head(Iterator<Occurrence> source, int order) {
+            this.source = source;
+            this.order = order;
+        }
+    }
+
+    public OccurrenceStream(List<Iterator<Occurrence>> sources) {
+        heads = new PriorityQueue<>(Math.max(1, sources.size()), ORDER);
+        for (int i = 0; i < sources.size(); i++) {
+            Head head = new Head(sources.get(i), i);
+            if (head.source.hasNext()) {
+                head.current = head.source.next();
+                heads.add(head);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Occurrence next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        Occurrence result = head.current;
+        if (head.source.hasNext()) {
+            head.current = head.source.next();
+            heads.add(head);
+        }
+        return result;
+    }
+
+    /**
+     * @return the next occurrences that start before toMinute, at most limit of them
+     */
+    public List<Occurrence> take(long toMinute, int limit) {
+        List<Occurrence> taken = new ArrayList<>();
+        while (taken.size() < limit && hasNext() && heads.peek().current.getStartMinute() < toMinute) {
+            taken.add(next());
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a big CSV file on several cores.
+ *
+ * The unread part of a CsvScanner is cut into line-aligned byte ranges
+ * (see CsvScanner.split), every range is parsed by its own task on the
+ * common fork-join pool and the results are returned in file order,
+ * so the caller can merge them exactly as if it had read the file top to bottom.
+ * Small files are parsed on the calling thread, splitting them costs more than it saves.
+ */
+public class ParallelCsvLoader {
+    // below this size one thread is faster than handing out tasks
+    private static final int MIN_PARALLEL_BYTES = 1 << 20;
+    // no chunk gets smaller than this
+    private static final int MIN_CHUNK_BYTES = 256 << 10;
+    // a few chunks per core so one slow chunk does not hold everything up
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // parses every record of one chunk into a partial result
+    public interface ChunkParser<T> {
+        T parse(CsvScanner chunk);
+    }
+
+    /**
+     * @return one partial result per chunk, in file order
+     */
+    public static <T> List<T> parse(CsvScanner scanner, ChunkParser<T> parser) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int threads = pool.getParallelism();
+        int remaining = scanner.remaining();
+        List<T> results = new ArrayList<>();
+        if (threads < 2 || remaining < MIN_PARALLEL_BYTES) {
+            results.add(parser.parse(scanner));
+            return results;
+        }
+
+        int parts = Math.min(threads * CHUNKS_PER_THREAD, Math.max(1, remaining / MIN_CHUNK_BYTES));
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(parts);
+        for (CsvScanner chunk : scanner.split(parts)) {
+            tasks.add(pool.submit(() -> parser.parse(chunk)));
+        }
+        // join in submission order, which is file order
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+}
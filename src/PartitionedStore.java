@@ -0,0 +1,378 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * On-disk layout of the calendar (schema 3), split by time so a query only reads the months it needs.
+ *
+ *   data/store/manifest.csv   one row per segment: segment,rows,minStart,maxEnd
+ *   data/store/ids.csv        eventId,segment for every stored event
+ *   data/store/recurring.csv  every event that has a recurrence rule (always loaded)
+ *   data/store/2025-03.csv    non-recurring events starting in that month
+ *
+ * Segment files use the row format of the old single-file calendar.csv (schema 2):
+ * event columns + rule columns.
+ * This class only reads and formats files; FileManager decides what to write
+ * and commits it through GroupCommitWriter, EventRepository caches what was read.
+ * A segment may also have a binary copy (2025-03.bin, see SnapshotStore) that is
+ * used while it is newer than the CSV file.
+ */
+public class PartitionedStore {
+    public static final String RECURRING = "recurring";
+    protected static final int SCHEMA_VERSION = 3;
+    private static final String SCHEMA_PREFIX = "#schema=";
+    // last line of the manifest: the highest eventId ever stored, deleted ones included
+    private static final String MAX_ID_PREFIX = "#maxEventId=";
+    private static final String MANIFEST_HEADER = "segment,rows,minStart,maxEnd";
+    private static final String INDEX_HEADER = "eventId,segment";
+    // same columns as calendar.csv of schema 2
+    protected static final String ROW_HEADER = "eventId,title,description,startDateTime,endDateTime,location,category,attendees,recurrentInterval,recurrentTimes,recurrentEndDate";
+
+    private final Path dir;
+
+    // what the manifest knows about one segment file
+    public static class SegmentInfo {
+        private final String key;
+        private final int rows;
+        private final LocalDateTime minStart;
+        private final LocalDateTime maxEnd;
+
+        public SegmentInfo(String key, int rows, LocalDateTime minStart, LocalDateTime maxEnd) {
+            this.key = key;
+            this.rows = rows;
+            this.minStart = minStart;
+            this.maxEnd = maxEnd;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        // true if an event of this segment can overlap [start, end)
+        public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return minStart.isBefore(end) && maxEnd.isAfter(start);
+        }
+    }
+
+    public PartitionedStore(String dirPath) {
+        this.dir = Paths.get(dirPath);
+    }
+
+    public Path getManifestPath() {
+        return dir.resolve("manifest.csv");
+    }
+
+    public Path getIndexPath() {
+        return dir.resolve("ids.csv");
+    }
+
+    public Path getSegmentPath(String key) {
+        return dir.resolve(key + ".csv");
+    }
+
+    public boolean exists() {
+        return Files.exists(getManifestPath());
+    }
+
+    public void ensureExists() {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            System.err.println("Unable to create " + dir + ": " + e.getMessage());
+        }
+    }
+
+    // recurring events share one segment, everything else goes by the month it starts in
+    public static String segmentOf(Event event, boolean recurring) {
+        return recurring ? RECURRING : YearMonth.from(event.getStartDateTime()).toString();
+    }
+
+    // ---- reading ----
+
+    /**
+     * @return segments by key, sorted (recurring last)
+     */
+    public Map<String, SegmentInfo> readManifest() {
+        Map<String, SegmentInfo> manifest = new TreeMap<>();
+        try {
+            CsvScanner scanner = openSkippingHeader(getManifestPath());
+            while (scanner.nextRecord()) {
+                try {
+                    String key = scanner.stringField().trim();
+                    if (key.startsWith(MAX_ID_PREFIX)) {
+                        continue;
+                    }
+                    int rows = scanner.intField();
+                    LocalDateTime minStart = scanner.dateTimeField();
+                    LocalDateTime maxEnd = scanner.dateTimeField();
+                    manifest.put(key, new SegmentInfo(key, rows, minStart, maxEnd));
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in manifest.csv: " + e.getMessage());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // empty store
+        } catch (IOException e) {
+            System.err.println("Error reading manifest.csv: " + e.getMessage());
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the highest eventId the store has ever held, 0 for an empty store
+     * or one written before the mark was kept
+     */
+    public int readMaxEventId() {
+        int maxEventId = 0;
+        try {
+            CsvScanner scanner = openSkippingHeader(getManifestPath());
+            while (scanner.nextRecord()) {
+                String first = scanner.stringField();
+                if (first != null && first.startsWith(MAX_ID_PREFIX)) {
+                    try {
+                        maxEventId = Integer.parseInt(first.substring(MAX_ID_PREFIX.length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Skipping malformed row in manifest.csv: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // empty store
+        } catch (IOException e) {
+            System.err.println("Error reading manifest.csv: " + e.getMessage());
+        }
+        return maxEventId;
+    }
+
+    // eventId -> segment key
+    public Map<Integer, String> readIndex() {
+        Map<Integer, String> index = new HashMap<>();
+        try {
+            CsvScanner scanner = openSkippingHeader(getIndexPath());
+            while (scanner.nextRecord()) {
+                try {
+                    int id = scanner.intField();
+                    // keys repeat a lot, share one String per segment
+                    index.put(id, scanner.stringField().trim().intern());
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping malformed row in ids.csv: " + e.getMessage());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // empty store
+        } catch (IOException e) {
+            System.err.println("Error reading ids.csv: " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Reads one segment, from its binary copy when that is up to date.
+     * A missing segment is empty.
+     */
+    public CalendarData readSegment(String key) {
+        Path csv = getSegmentPath(key);
+        SnapshotStore snapshot = snapshotOf(key);
+        if (snapshot.isNewerThan(csv.toString())) {
+            CalendarData data = snapshot.read();
+            if (data != null) {
+                return data;
+            }
+        }
+        try {
+            return readRows(csv);
+        } catch (NoSuchFileException e) {
+            return new CalendarData(new ArrayList<>(), new HashMap<>());
+        } catch (IOException e) {
+            System.err.println("Error reading " + csv + ": " + e.getMessage());
+            return new CalendarData(new ArrayList<>(), new HashMap<>());
+        }
+    }
+
+    // called on clean shutdown for the segments that were read
+    public void writeSegmentSnapshot(String key, CalendarData data) {
+        snapshotOf(key).write(data);
+    }
+
+    private SnapshotStore snapshotOf(String key) {
+        return new SnapshotStore(dir.resolve(key + ".bin").toString());
+    }
+
+    /**
+     * Parses a file in the segment row format (segments and the schema 2 calendar.csv).
+     * Big files are parsed in line-aligned chunks on all cores, merged back in file order.
+     * A later row with the same eventId replaces the earlier one.
+     */
+    public static CalendarData readRows(Path path) throws IOException {
+        Map<Integer, Event> events = new LinkedHashMap<>();
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        CsvScanner scanner = openSkippingHeader(path);
+        for (CalendarData chunk : ParallelCsvLoader.parse(scanner, PartitionedStore::readChunk)) {
+            for (Event e : chunk.getEvents()) {
+                events.put(e.getEventId(), e);
+            }
+            rules.putAll(chunk.getRules());
+        }
+        return new CalendarData(new ArrayList<>(events.values()), rules);
+    }
+
+    // skips the optional "#schema=n" line and the column header
+    private static CsvScanner openSkippingHeader(Path path) throws IOException {
+        CsvScanner scanner = CsvScanner.open(path);
+        if (scanner.nextRecord()) {
+            String first = scanner.stringField();
+            if (first != null && first.startsWith(SCHEMA_PREFIX)) {
+                int version = Integer.parseInt(first.substring(SCHEMA_PREFIX.length()).trim());
+                if (version > SCHEMA_VERSION) {
+                    System.err.println(path.getFileName() + " was written by a newer version (schema " + version + "), reading known columns only.");
+                }
+                scanner.skipRecord(); // column header
+            }
+            // otherwise the first line was the column header itself
+        }
+        return scanner;
+    }
+
+    // runs on a pool thread for big files, so it must not touch any shared state
+    private static CalendarData readChunk(CsvScanner scanner) {
+        List<Event> events = new ArrayList<>();
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        while (scanner.nextRecord()) {
+            try {
+                readRow(scanner, events, rules);
+            } catch (RuntimeException e) {
+                System.err.println("Skipping malformed row: " + e.getMessage());
+            }
+        }
+        return new CalendarData(events, rules);
+    }
+
+    // one row: the event columns, then interval,times,endDate (empty when not recurring)
+    private static void readRow(CsvScanner scanner, List<Event> events, Map<Integer, RecurrenceRule> rules) {
+        Event e = Event.fromCsv(scanner);
+        events.add(e);
+        String interval = scanner.hasMoreFields() ? scanner.stringField().trim() : "";
+        if (!interval.isEmpty()) {
+            int times = scanner.intField();
+            String rawEndDate = scanner.hasMoreFields() ? scanner.stringField().trim() : "0";
+            LocalDateTime endDate = rawEndDate.equals("0") || rawEndDate.isEmpty() ? null : LocalDateTime.parse(rawEndDate);
+            try {
+                rules.put(e.getEventId(), new RecurrenceRule(e.getEventId(), interval, times, endDate));
+            } catch (IllegalArgumentException invalid) {
+                // keep the event, it shows up once without its rule
+                System.err.println("Skipping invalid recurrence rule of event " + e.getEventId() + ": " + invalid.getMessage());
+            }
+        }
+    }
+
+    // ---- writing: the caller collects the files and commits them together ----
+
+    /**
+     * Adds one segment file and returns its manifest entry (null when it is empty,
+     * the caller then drops it from the manifest and deletes the file after the commit).
+     */
+    public SegmentInfo addSegment(Map<Path, String> files, String key, Collection<Event> events,
+                                  Map<Integer, RecurrenceRule> rules) {
+        if (events.isEmpty()) {
+            return null;
+        }
+        files.put(getSegmentPath(key), rowsContent(events, rules));
+        LocalDateTime minStart = null;
+        LocalDateTime maxEnd = null;
+        for (Event e : events) {
+            if (minStart == null || e.getStartDateTime().isBefore(minStart)) minStart = e.getStartDateTime();
+            if (maxEnd == null || e.getEndDateTime().isAfter(maxEnd)) maxEnd = e.getEndDateTime();
+        }
+        return new SegmentInfo(key, events.size(), minStart, maxEnd);
+    }
+
+    /**
+     * @param maxEventId the highest eventId handed out so far, kept so that the id of
+     *                   a deleted event is not given to a new one after a restart
+     */
+    public void addManifest(Map<Path, String> files, Collection<SegmentInfo> segments, int maxEventId) {
+        StringBuilder csv = new StringBuilder(SCHEMA_PREFIX + SCHEMA_VERSION).append(System.lineSeparator());
+        csv.append(MANIFEST_HEADER).append(System.lineSeparator());
+        for (SegmentInfo s : segments) {
+            csv.append(s.key).append(',').append(s.rows).append(',')
+                    .append(s.minStart).append(',').append(s.maxEnd).append(System.lineSeparator());
+        }
+        csv.append(MAX_ID_PREFIX).append(maxEventId).append(System.lineSeparator());
+        files.put(getManifestPath(), csv.toString());
+    }
+
+    public void addIndex(Map<Path, String> files, Map<Integer, String> index) {
+        StringBuilder csv = new StringBuilder(index.size() * 12 + 32);
+        csv.append(INDEX_HEADER).append(System.lineSeparator());
+        for (Map.Entry<Integer, String> entry : index.entrySet()) {
+            csv.append(entry.getKey()).append(',').append(entry.getValue()).append(System.lineSeparator());
+        }
+        files.put(getIndexPath(), csv.toString());
+    }
+
+    // after a commit: segment files that are no longer in the manifest, and stale binary copies
+    public void deleteSegment(String key) {
+        try {
+            Files.deleteIfExists(getSegmentPath(key));
+        } catch (IOException e) {
+            System.err.println("Unable to delete segment " + key + ": " + e.getMessage());
+        }
+        discardSnapshot(key);
+    }
+
+    public void discardSnapshot(String key) {
+        snapshotOf(key).discard();
+    }
+
+    // every key that has a file in the store folder, used to clean up after a full rewrite
+    public List<String> listSegmentFiles() {
+        List<String> keys = new ArrayList<>();
+        File[] files = dir.toFile().listFiles();
+        if (files == null) {
+            return keys;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(".csv") && !name.equals("manifest.csv") && !name.equals("ids.csv")) {
+                keys.add(name.substring(0, name.length() - 4));
+            }
+        }
+        return keys;
+    }
+
+    // one segment file: schema line, ROW_HEADER, then a row per event
+    public static String rowsContent(Collection<Event> events, Map<Integer, RecurrenceRule> rules) {
+        StringBuilder csv = new StringBuilder(events.size() * 96 + 256);
+        csv.append(SCHEMA_PREFIX + SCHEMA_VERSION).append(System.lineSeparator());
+        csv.append(ROW_HEADER).append(System.lineSeparator());
+        for (Event event : events) {
+            csv.append(event.toCsvString()).append(','); //toCsvString() method in Event.java
+            RecurrenceRule rule = rules.get(event.getEventId());
+            if (rule == null) {
+                csv.append(",,");
+            } else {
+                // toCsvR() without its leading eventId
+                String ruleCsv = rule.toCsvR();
+                csv.append(ruleCsv, ruleCsv.indexOf(',') + 1, ruleCsv.length());
+            }
+            csv.append(System.lineSeparator());
+        }
+        return csv.toString();
+    }
+}
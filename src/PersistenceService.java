@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes data files on one background thread so the JavaFX thread never waits for the disk.
+ *
+ * Callers update the in-memory state first (EventRepository, ReminderManager) and then
+ * submit the matching write under a key. Writes are debounced: they run DEBOUNCE_MS after
+ * the last submit (at most MAX_DELAY_MS after the first one), and a newer write with the
+ * same key replaces the older one still waiting, e.g. three edits of one event cost one
+ * journal record and five reminder changes one rewrite of reminder.csv.
+ * Writes with different keys keep the order in which they were (last) submitted.
+ *
+ * flush() must be called before exiting, see CalendarGUI.stop().
+ */
+public class PersistenceService {
+    private static final long DEBOUNCE_MS = 250;
+    private static final long MAX_DELAY_MS = 2000;
+
+    private static final PersistenceService SHARED = new PersistenceService();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "persistence-writer");
+        // flush() on exit takes care of pending writes, don't keep the JVM alive for them
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Thread writerThread;
+
+    // guarded by 'this'
+    private final Map<String, Runnable> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledDrain;
+    private long firstPendingAt;
+    private boolean writing;
+    // writing || !pending.isEmpty(), readable without the lock (checked on every repository read)
+    private volatile boolean busy;
+
+    public static PersistenceService shared() {
+        return SHARED;
+    }
+
+    /**
+     * Queues a write. It replaces a queued write with the same key.
+     */
+    public synchronized void submit(String key, Runnable write) {
+        long now = System.currentTimeMillis();
+        if (pending.isEmpty()) {
+            firstPendingAt = now;
+        }
+        // remove first so the key moves to the end, after everything submitted before it
+        pending.remove(key);
+        pending.put(key, write);
+        busy = true;
+
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        long delay = Math.min(DEBOUNCE_MS, Math.max(0, firstPendingAt + MAX_DELAY_MS - now));
+        scheduledDrain = writer.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true while something is queued or being written
+     */
+    public boolean hasPendingWrites() {
+        return busy;
+    }
+
+    /**
+     * Runs every queued write now and waits for it.
+     * Called before anything reads the files directly and on exit.
+     */
+    public void flush() {
+        if (Thread.currentThread() == writerThread) {
+            // already on the writer thread, whatever is queued runs right after the current write
+            return;
+        }
+        try {
+            writer.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error flushing pending writes: " + e.getCause());
+        }
+    }
+
+    private void drain() {
+        writerThread = Thread.currentThread();
+        List<Runnable> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            scheduledDrain = null;
+            writing = true;
+        }
+        try {
+            for (Runnable write : batch) {
+                try {
+                    write.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Background write failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            synchronized (this) {
+                writing = false;
+                busy = !pending.isEmpty();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Results of EventSearcher.search(), shared by every EventSearcher. The calendar view
+ * redraws, the statistics scope toggles and the search window ask the same questions
+ * over and over; as long as the data did not change they get the list from last time.
+ *
+ * The whole cache belongs to one snapshot version of one repository. Any write
+ * publishes a new version, and the first lookup that sees it drops every entry at
+ * once, so nothing has to be invalidated on the write path itself.
+ *
+ * Least recently used entries are dropped beyond MAX_ENTRIES.
+ */
+public final class QueryCache {
+    // a month view holds a few hundred instances, a year of statistics a few thousand
+    static final int MAX_ENTRIES = 64;
+
+    private static final QueryCache SHARED = new QueryCache(MAX_ENTRIES);
+
+    private final Map<Query, List<Occurrence>> results;
+    // the data the entries were computed from
+    private EventRepository repository;
+    private long version = -1;
+    private long hits;
+    private long misses;
+
+    /**
+     * A search normalized the way advanceFilter() reads it: text lowercased and trimmed,
+     * null and "General" (any category) both stored as "".
+     */
+    static final class Query {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final String keyword;
+        private final String category;
+        private final String location;
+        private final String attendees;
+
+        Query(LocalDateTime start, LocalDateTime end, String keyword, String category, String location, String attendees) {
+            this.start = start;
+            this.end = end;
+            this.keyword = text(keyword);
+            this.category = category == null || category.equalsIgnoreCase("General") ? "" : category.toLowerCase();
+            this.location = text(location);
+            this.attendees = text(attendees);
+        }
+
+        private static String text(String value) {
+            return value == null ? "" : value.toLowerCase().trim();
+        }
+
+        boolean hasFilter() {
+            return !keyword.isEmpty() || !category.isEmpty() || !location.isEmpty() || !attendees.isEmpty();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Query q)) return false;
+            return start.equals(q.start) && end.equals(q.end) && keyword.equals(q.keyword)
+                    && category.equals(q.category) && location.equals(q.location) && attendees.equals(q.attendees);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, keyword, category, location, attendees);
+        }
+    }
+
+    QueryCache(int maxEntries) {
+        // access order: get() moves an entry to the end, the eldest is the least recently used
+        this.results = new LinkedHashMap<>(maxEntries * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, List<Occurrence>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static QueryCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the result of query at this version of repository, null if it is not cached
+     */
+    synchronized List<Occurrence> get(EventRepository repository, long version, Query query) {
+        if (!matches(repository, version) && (repository != this.repository || version > this.version)) {
+            // the data changed, nothing cached is valid any more
+            results.clear();
+            this.repository = repository;
+            this.version = version;
+        }
+        List<Occurrence> result = matches(repository, version) ? results.get(query) : null;
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    /**
+     * Call after get() with the same repository and version.
+     * @param result read-only, it is handed out to every later caller
+     */
+    synchronized void put(EventRepository repository, long version, Query query, List<Occurrence> result) {
+        // a result computed from data that has changed since is dropped
+        if (matches(repository, version)) {
+            results.put(query, result);
+        }
+    }
+
+    private boolean matches(EventRepository repository, long version) {
+        return repository == this.repository && version == this.version;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        repository = null;
+        version = -1;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // one line for the log, e.g. "Query cache: 120 hits, 30 misses (80% hit rate), 12 entries"
+    public synchronized String summary() {
+        long lookups = hits + misses;
+        long rate = lookups == 0 ? 0 : Math.round(100.0 * hits / lookups);
+        return "Query cache: " + hits + " hits, " + misses + " misses (" + rate + "% hit rate), "
+                + results.size() + " entries";
+    }
+}
@@ -1,85 +1,592 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 
 public class RecurrenceManager{
-    public List<Event> generateOccurrences(Event base, RecurrenceRule rule, LocalDateTime searchStart, LocalDateTime searchEnd){
-        List<Event> occurrences = new ArrayList<>();
+    /**
+     * @return the instances of base that overlap [searchStart, searchEnd), in time order.
+     *         Only the instance times are new, every other field comes from base (see Occurrence).
+     */
+    public List<Occurrence> generateOccurrences(Event base, RecurrenceRule rule, LocalDateTime searchStart, LocalDateTime searchEnd){
+        return generateOccurrences(base, rule, Map.of(), searchStart, searchEnd);
+    }
+
+    /**
+     * Same, with the exceptions of the series applied: an instance with an override in
+     * 'overrides' (keyed by InstanceOverride.key) is dropped when cancelled and replaced
+     * by the override's event otherwise, if that still overlaps the window.
+     * Instances moved INTO the window from outside it are not found here, see
+     * EventSearcher.searchByDateRange().
+     */
+    public List<Occurrence> generateOccurrences(Event base, RecurrenceRule rule, Map<Long, InstanceOverride> overrides,
+                                                LocalDateTime searchStart, LocalDateTime searchEnd){
+        List<Occurrence> occurrences = new ArrayList<>();
 
-        if ((rule == null) || (rule.getRecurrentInterval() == null)){
+        if (rule == null){
             return occurrences;
 //            an empty arraylist is returned
         }
-        LocalDateTime current = base.getStartDateTime();
-        long durationMinutes = ChronoUnit.MINUTES.between(base.getStartDateTime(), base.getEndDateTime());
+        long searchStartMinute = Occurrence.toEpochMinute(searchStart);
+        long searchEndMinute = Occurrence.toEpochMinute(searchEnd);
+        Cursor cursor = cursor(base, rule, searchStartMinute);
+        // most series have no exceptions, they never pay for the lookup
+        boolean checkOverrides = !overrides.isEmpty();
+        boolean moved = false;
 
-//        count of occurrences : starting at 1 for base event
-        int currentCount = 1;
-
-        int recurrentTimes = rule.getRecurrentTimes();
-        LocalDateTime recurrentEndDateTime = rule.getRecurrentEndDate();
-
-//        Step forward to reach the first event after seacrchStart datetime
-        while (current.isBefore(searchStart)){
-            // Check if this instance overlaps the search start window
-            LocalDateTime instanceEnd = current.plusMinutes(durationMinutes);
-            if (instanceEnd.isAfter(searchStart)) {
-                break; // Found an overlapping instance, stop skipping
+        // collection of recurrence
+        while (cursor.hasNext()){
+            long start = cursor.next();
+            if (start >= searchEndMinute){
+                break;
+            }
+            if (checkOverrides) {
+                InstanceOverride override = overrides.get(InstanceOverride.key(base.getEventId(), start));
+                if (override != null) {
+                    Occurrence replacement = override.toOccurrence();
+                    if (replacement != null && replacement.overlaps(searchStartMinute, searchEndMinute)) {
+                        occurrences.add(replacement);
+                        moved = true;
+                    }
+                    continue;
+                }
             }
-            // recurrent time as variable, endDateTime = null
-            if (recurrentTimes > 0 && currentCount > recurrentTimes){
+            occurrences.add(new Occurrence(base, start, start + cursor.durationMinutes));
+
+            if (occurrences.size() > 5000){
                 break;
             }
+        }
+        if (moved) {
+            occurrences.sort(Comparator.comparingLong(Occurrence::getStartMinute));
+        }
+        return occurrences;
+    }
+
+    /**
+     * @return the instances of base that end after 'from', in time order and with no end,
+     *         read month by month from the OccurrenceCache (expanded on a miss). Instances
+     *         that have an override are left out, cancelled or not: a moved instance belongs
+     *         at its new time, see EventSearcher.streamFrom().
+     */
+    public Iterator<Occurrence> occurrencesFrom(Event base, RecurrenceRule rule, Map<Long, InstanceOverride> overrides,
+                                                LocalDateTime from) {
+        long fromMinute = Occurrence.toEpochMinute(from);
+        long duration = Occurrence.toEpochMinute(base.getEndDateTime()) - Occurrence.toEpochMinute(base.getStartDateTime());
+        boolean checkOverrides = !overrides.isEmpty();
+        return new Iterator<>() {
+            // an instance that starts before this month cannot reach 'from'
+            private int month = monthOf(fromMinute - duration);
+            private OccurrenceCache.Bucket bucket;
+            private int position;
+            private Occurrence next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (bucket == null || position >= bucket.starts.length) {
+                        if (bucket != null) {
+                            if (bucket.nextStart == Long.MAX_VALUE) {
+                                return false;
+                            }
+                            // straight to the month of the next instance, empty months in between are skipped
+                            month = monthOf(bucket.nextStart);
+                        }
+                        bucket = bucket(base, rule, month);
+                        position = 0;
+                        continue;
+                    }
+                    long start = bucket.starts[position++];
+                    if (start + duration > fromMinute
+                            && (!checkOverrides || !overrides.containsKey(InstanceOverride.key(base.getEventId(), start)))) {
+                        next = new Occurrence(base, start, start + duration);
+                    }
+                }
+                return true;
+            }
 
-            // end date as variable, recurrentTime = 0
+            @Override
+            public Occurrence next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Occurrence result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
 
-            if ((recurrentEndDateTime != null) && (current.isAfter(recurrentEndDateTime))){
+    // instance starts of one month, from the cache or expanded now
+    private OccurrenceCache.Bucket bucket(Event base, RecurrenceRule rule, int month) {
+        OccurrenceCache cache = OccurrenceCache.shared();
+        OccurrenceCache.Bucket bucket = cache.get(base, rule, month);
+        if (bucket != null) {
+            return bucket;
+        }
+        YearMonth yearMonth = YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+        long monthStart = Occurrence.toEpochMinute(yearMonth.atDay(1).atStartOfDay());
+        long monthEnd = Occurrence.toEpochMinute(yearMonth.plusMonths(1).atDay(1).atStartOfDay());
+        // cursor on the first instance that starts at or after monthStart
+        Cursor cursor = cursor(base, rule, monthStart - 1 + Occurrence.toEpochMinute(base.getEndDateTime())
+                - Occurrence.toEpochMinute(base.getStartDateTime()));
+        long[] starts = new long[8];
+        int count = 0;
+        long nextStart = Long.MAX_VALUE;
+        while (cursor.hasNext()) {
+            long start = cursor.next();
+            if (start >= monthEnd) {
+                nextStart = start;
                 break;
             }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = start;
+        }
+        bucket = new OccurrenceCache.Bucket(base, rule, Arrays.copyOf(starts, count), nextStart);
+        cache.put(month, bucket);
+        return bucket;
+    }
 
-            current = updateCurrent(current, rule.getRecurrentInterval());
-            currentCount++;
+    // months since year 0, the bucket number of OccurrenceCache
+    private static int monthOf(long minute) {
+        LocalDate date = Occurrence.fromEpochMinute(minute).toLocalDate();
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
 
+    /**
+     * @return true if the rule has an instance of base starting exactly at startMinute
+     */
+    public boolean hasInstanceAt(Event base, RecurrenceRule rule, long startMinute) {
+        // first instance that ends after startMinute - 1 + duration = first start >= startMinute
+        long duration = Occurrence.toEpochMinute(base.getEndDateTime()) - Occurrence.toEpochMinute(base.getStartDateTime());
+        Cursor cursor = cursor(base, rule, startMinute - 1 + duration);
+        return cursor.hasNext() && cursor.next() == startMinute;
+    }
+
+    /**
+     * @return the number of instances of base that overlap [from, to), EXDATEs left out.
+     *         Nothing is materialized and there is no 5000 cap; "every N units" rules are
+     *         counted in constant time, BYDAY-style rules walk the window's instances.
+     */
+    public long countOccurrences(Event base, RecurrenceRule rule, LocalDateTime from, LocalDateTime to) {
+        if (rule == null) {
+            return Occurrence.of(base).overlaps(Occurrence.toEpochMinute(from), Occurrence.toEpochMinute(to)) ? 1 : 0;
+        }
+        return cursor(base, rule, Occurrence.toEpochMinute(from)).countBefore(Occurrence.toEpochMinute(to));
+    }
+
+    /**
+     * @return start of the first instance of base that starts after 'instant', null if there is none
+     */
+    public LocalDateTime nextOccurrenceAfter(Event base, RecurrenceRule rule, LocalDateTime instant) {
+        if (rule == null) {
+            return base.getStartDateTime().isAfter(instant) ? base.getStartDateTime() : null;
+        }
+        Cursor cursor = cursorAfter(base, rule, instant);
+        return cursor.hasNext() ? Occurrence.fromEpochMinute(cursor.next()) : null;
+    }
+
+    /**
+     * @return a cursor positioned on the first instance that starts after 'instant'
+     */
+    public Cursor cursorAfter(Event base, RecurrenceRule rule, LocalDateTime instant) {
+        long duration = Occurrence.toEpochMinute(base.getEndDateTime()) - Occurrence.toEpochMinute(base.getStartDateTime());
+        // start > instant  <=>  start + duration > instant + duration
+        return cursor(base, rule, Occurrence.toEpochMinute(instant) + duration);
+    }
+
+    /**
+     * @return the instance starts of base under rule (epoch minutes), in time order, from the
+     *         first instance that ends after fromMinute. Instances are computed one at a time
+     *         as they are read, so the caller decides how far to go.
+     */
+    public Cursor cursor(Event base, RecurrenceRule rule, long fromMinute) {
+        return rule.hasPattern() ? new PatternCursor(base, rule, fromMinute) : new IntervalCursor(base, rule, fromMinute);
+    }
+
+    /**
+     * Walks the instances of one rule. Subclasses produce the candidate starts in order;
+     * this class applies the limits: recurrentTimes (counting the base event, and
+     * excluded instances too, as COUNT does in RFC 5545), recurrentEndDate and EXDATE.
+     */
+    public abstract static class Cursor {
+        protected final RecurrenceRule rule;
+        protected final LocalDateTime baseStart;
+        protected final long baseMinute;
+        protected final long durationMinutes;
+        protected final long fromMinute;
+        // number of candidates produced so far, the next one has this index
+        protected long index;
+
+        protected final long lastIndex;
+        protected final long endMinute;
+        private long nextStart;
+        private boolean ready;
+        private boolean done;
+
+        Cursor(Event base, RecurrenceRule rule, long fromMinute) {
+            this.rule = rule;
+            this.baseStart = base.getStartDateTime();
+            this.baseMinute = Occurrence.toEpochMinute(baseStart);
+            this.durationMinutes = Occurrence.toEpochMinute(base.getEndDateTime()) - baseMinute;
+            this.fromMinute = fromMinute;
+//            recurrentTimes counts the base event too: instances 0 .. recurrentTimes - 1
+            this.lastIndex = rule.getRecurrentTimes() > 0 ? rule.getRecurrentTimes() - 1 : Long.MAX_VALUE;
+            this.endMinute = rule.getRecurrentEndDate() == null
+                    ? Long.MAX_VALUE : Occurrence.toEpochMinute(rule.getRecurrentEndDate());
+        }
+
+        public boolean hasNext() {
+            while (!ready && !done) {
+                if (index > lastIndex) {
+                    done = true;
+                    break;
+                }
+                long candidate = nextCandidate();
+                index++;
+                if (candidate == Long.MAX_VALUE || candidate > endMinute) {
+                    done = true;
+                } else if (candidate + durationMinutes > fromMinute && !rule.isExcluded(candidate)) {
+                    nextStart = candidate;
+                    ready = true;
+                }
             }
-        // collection of recurrence
+            return ready;
+        }
 
-        while (current.isBefore(searchEnd)){
-            boolean hasReachLimitedTime = recurrentTimes > 0 && currentCount > recurrentTimes;
-            boolean hasPassedEndDate = recurrentEndDateTime != null && current.isAfter(recurrentEndDateTime);
+        public long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return nextStart;
+        }
 
-            if (hasReachLimitedTime || hasPassedEndDate){
-                break;
+        public long getDurationMinutes() {
+            return durationMinutes;
+        }
+
+        // instances left that start before toMinute; only called on a new cursor, it is used up after
+        long countBefore(long toMinute) {
+            long count = 0;
+            while (hasNext() && next() < toMinute) {
+                count++;
             }
+            return count;
+        }
 
-            LocalDateTime instanceEnd = current.plusMinutes(durationMinutes);
+        // start of candidate 'index', Long.MAX_VALUE when the rule has no more
+        protected abstract long nextCandidate();
+    }
 
-            occurrences.add(new Event(base, current, instanceEnd));
-            current = updateCurrent(current, rule.getRecurrentInterval());
-            currentCount++;
+    /**
+     * "Every N units": instance k starts at base start + k intervals, and the first
+     * instance of the window is computed directly, so the cost depends on the number of
+     * instances inside the window, not on how long ago the rule started.
+     */
+    private static final class IntervalCursor extends Cursor {
+        IntervalCursor(Event base, RecurrenceRule rule, long fromMinute) {
+            super(base, rule, fromMinute);
+//            jump to the first instance that ends after fromMinute
+            index = firstIndexEndingAfter(fromMinute - durationMinutes);
+        }
 
-            if (occurrences.size() > 5000){
-                break;
+        @Override
+        protected long nextCandidate() {
+            return startOf(index);
+        }
+
+        // the index range of the window, no stepping: the constructor already seeked to the first one
+        @Override
+        long countBefore(long toMinute) {
+            long first = index;
+            long last = Math.min(lastIndex, firstIndexEndingAfter(toMinute - 1) - 1);
+            if (endMinute != Long.MAX_VALUE) {
+                last = Math.min(last, firstIndexEndingAfter(endMinute) - 1);
             }
+            if (last < first) {
+                return 0;
+            }
+            long count = last - first + 1;
+            // EXDATEs inside the range that fall on an instance
+            long[] excluded = rule.getExDates();
+            long firstStart = startOf(first);
+            long lastStart = startOf(last);
+            int i = Arrays.binarySearch(excluded, firstStart);
+            i = i < 0 ? -i - 1 : i;
+            // binarySearch can land on any of several equal dates, count from the first
+            while (i > 0 && excluded[i - 1] >= firstStart) {
+                i--;
+            }
+            for (; i < excluded.length && excluded[i] <= lastStart; i++) {
+                boolean repeated = i > 0 && excluded[i] == excluded[i - 1];
+                if (!repeated && startOf(firstIndexEndingAfter(excluded[i] - 1)) == excluded[i]) {
+                    count--;
+                }
+            }
+            return count;
+        }
+
+        // start of instance 'index', in epoch minutes
+        private long startOf(long index) {
+            if (rule.getStepMonths() > 0) {
+                // always from the base start, so a rule on the 31st is back on the 31st after a short month
+                return Occurrence.toEpochMinute(baseStart.plusMonths(index * rule.getStepMonths()));
+            }
+            return baseMinute + index * rule.getStepMinutes();
+        }
+
+        // smallest index whose start is after 'minute'
+        private long firstIndexEndingAfter(long minute) {
+            if (minute < baseMinute) {
+                return 0;
+            }
+            if (rule.getStepMonths() == 0) {
+                return Math.floorDiv(minute - baseMinute, rule.getStepMinutes()) + 1;
+            }
+            // whole months between the base start and 'minute', one step back to stay before it
+            // (plusMonths clamps to the month end, which can only move an instance earlier)
+            long months = ChronoUnit.MONTHS.between(baseStart, Occurrence.fromEpochMinute(minute));
+            long index = Math.max(0, months / rule.getStepMonths() - 1);
+            while (startOf(index) <= minute) {
+                index++;
+            }
+            return index;
         }
-        return occurrences;
     }
 
-    public LocalDateTime updateCurrent(LocalDateTime current, String interval){
-        try {
-            int amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
-            char unit = interval.toLowerCase().charAt(interval.length() - 1);
-            return switch (unit) {
-                case 'd' -> current.plusDays(amount);
-                case 'w' -> current.plusWeeks(amount);
-                case 'm' -> current.plusMonths(amount);
-                case 'y' -> current.plusYears(amount);
-                default -> current.plusDays(1);
+    /**
+     * BYDAY / BYMONTHDAY / BYSETPOS rules. Works one period (day, week, month or year,
+     * every INTERVAL periods) at a time: the matching days of the period are computed,
+     * BYSETPOS picks among them, and each gets the base start's time of day.
+     * The base event itself is always the first instance.
+     *
+     * Without a count the walk starts at the period of the window; with a count every
+     * earlier instance has to be counted, so it starts at the base (at most COUNT instances).
+     */
+    private static final class PatternCursor extends Cursor {
+        // give up after this many periods in a row without a match; rare matches like
+        // FREQ=MONTHLY;BYMONTHDAY=31;BYDAY=MO are still found, impossible ones end
+        private static final int MAX_EMPTY_PERIODS = 5000;
+
+        private final LocalDate baseDate;
+        private final long minuteOfDay;
+        private long period;
+        private long[] candidates = new long[0];
+        private int position;
+        private boolean baseDone;
+
+        PatternCursor(Event base, RecurrenceRule rule, long fromMinute) {
+            super(base, rule, fromMinute);
+            this.baseDate = baseStart.toLocalDate();
+            this.minuteOfDay = Math.floorMod(baseMinute, 1440);
+            if (rule.getRecurrentTimes() == 0 && fromMinute - durationMinutes > baseMinute) {
+                // an instance that started up to durationMinutes earlier still reaches into the window;
+                // that many minutes span at most ceil(duration / shortest period) period starts,
+                // plus one period for the time of day
+                LocalDate target = Occurrence.fromEpochMinute(fromMinute).toLocalDate();
+                long back = (durationMinutes + shortestPeriodMinutes() - 1) / shortestPeriodMinutes() + 1;
+                period = Math.max(0, periodsBetween(target) / rule.getAmount() - back);
+                baseDone = period > 0;
+            }
+        }
+
+        @Override
+        protected long nextCandidate() {
+            if (!baseDone) {
+                baseDone = true;
+                return baseMinute;
+            }
+            int empty = 0;
+            while (position >= candidates.length) {
+                if (empty++ > MAX_EMPTY_PERIODS) {
+                    return Long.MAX_VALUE;
+                }
+                candidates = startsInPeriod(period++);
+                position = 0;
+            }
+            return candidates[position++];
+        }
+
+        private long shortestPeriodMinutes() {
+            long days = switch (rule.getUnit()) {
+                case DAY -> 1;
+                case WEEK -> 7;
+                case MONTH -> 28;
+                case YEAR -> 365;
+            };
+            return days * rule.getAmount() * 1440;
+        }
+
+        // whole periods of the rule's unit from the base date to 'date'
+        private long periodsBetween(LocalDate date) {
+            return switch (rule.getUnit()) {
+                case DAY -> ChronoUnit.DAYS.between(baseDate, date);
+                case WEEK -> ChronoUnit.WEEKS.between(mondayOf(baseDate), mondayOf(date));
+                case MONTH -> ChronoUnit.MONTHS.between(YearMonth.from(baseDate), YearMonth.from(date));
+                case YEAR -> date.getYear() - baseDate.getYear();
+            };
+        }
+
+        // sorted instance starts of period p that come after the base start
+        private long[] startsInPeriod(long p) {
+            long steps = p * rule.getAmount();
+            long[] days = switch (rule.getUnit()) {
+                case DAY -> {
+                    LocalDate day = baseDate.plusDays(steps);
+                    yield matchesWeekday(day) && matchesMonthDay(day) ? new long[]{day.toEpochDay()} : new long[0];
+                }
+                case WEEK -> weekDays(mondayOf(baseDate).plusWeeks(steps));
+                case MONTH -> {
+                    LocalDate first = YearMonth.from(baseDate).plusMonths(steps).atDay(1);
+                    yield rangeDays(first, first.with(TemporalAdjusters.lastDayOfMonth()));
+                }
+                case YEAR -> {
+                    LocalDate first = LocalDate.of(Math.toIntExact(baseDate.getYear() + steps), 1, 1);
+                    yield rangeDays(first, first.with(TemporalAdjusters.lastDayOfYear()));
+                }
             };
-        }catch (Exception e){
-            return current.plusDays(1);
+            days = applySetPos(days);
+
+            long[] starts = new long[days.length];
+            int count = 0;
+            for (long day : days) {
+                long start = day * 1440 + minuteOfDay;
+                // the base start was already returned, nothing before it belongs to the series
+                if (start > baseMinute) {
+                    starts[count++] = start;
+                }
+            }
+            return count == starts.length ? starts : Arrays.copyOf(starts, count);
+        }
+
+        private long[] weekDays(LocalDate monday) {
+            int[] weekdays = rule.getByDayWeekday();
+            if (weekdays.length == 0) {
+                weekdays = new int[]{baseDate.getDayOfWeek().getValue()};
+            }
+            long[] days = new long[weekdays.length];
+            int count = 0;
+            for (int weekday : weekdays) {
+                LocalDate day = monday.plusDays(weekday - 1);
+                if (matchesMonthDay(day)) {
+                    days[count++] = day.toEpochDay();
+                }
+            }
+            return sortedUnique(days, count);
+        }
+
+        // matching days of a month or a year
+        private long[] rangeDays(LocalDate first, LocalDate last) {
+            long[] days = new long[64];
+            int count = 0;
+            if (rule.getByMonthDay().length > 0) {
+                for (LocalDate month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                    int length = month.lengthOfMonth();
+                    for (int monthDay : rule.getByMonthDay()) {
+                        int dayOfMonth = monthDay > 0 ? monthDay : length + 1 + monthDay;
+                        if (dayOfMonth < 1 || dayOfMonth > length) continue;
+                        LocalDate day = month.withDayOfMonth(dayOfMonth);
+                        // BYDAY only limits the days here
+                        if (matchesWeekday(day)) {
+                            days = grow(days, count);
+                            days[count++] = day.toEpochDay();
+                        }
+                    }
+                }
+                return sortedUnique(days, count);
+            }
+            int[] weekdays = rule.getByDayWeekday();
+            int[] ordinals = rule.getByDayOrdinal();
+            for (int i = 0; i < weekdays.length; i++) {
+                DayOfWeek weekday = DayOfWeek.of(weekdays[i]);
+                LocalDate firstMatch = first.with(TemporalAdjusters.nextOrSame(weekday));
+                if (ordinals[i] == 0) {
+                    for (LocalDate day = firstMatch; !day.isAfter(last); day = day.plusWeeks(1)) {
+                        days = grow(days, count);
+                        days[count++] = day.toEpochDay();
+                    }
+                } else {
+                    // 2FR = second Friday, -1FR = last Friday of the period
+                    LocalDate day = ordinals[i] > 0
+                            ? firstMatch.plusWeeks(ordinals[i] - 1)
+                            : last.with(TemporalAdjusters.previousOrSame(weekday)).minusWeeks(-ordinals[i] - 1);
+                    if (!day.isBefore(first) && !day.isAfter(last)) {
+                        days = grow(days, count);
+                        days[count++] = day.toEpochDay();
+                    }
+                }
+            }
+            return sortedUnique(days, count);
+        }
+
+        // BYSETPOS=-1 keeps the last day of the period's set, 1 the first
+        private long[] applySetPos(long[] days) {
+            int[] positions = rule.getBySetPos();
+            if (positions.length == 0 || days.length == 0) {
+                return days;
+            }
+            long[] picked = new long[positions.length];
+            int count = 0;
+            for (int position : positions) {
+                int i = position > 0 ? position - 1 : days.length + position;
+                if (i >= 0 && i < days.length) {
+                    picked[count++] = days[i];
+                }
+            }
+            return sortedUnique(picked, count);
+        }
+
+        private boolean matchesWeekday(LocalDate day) {
+            int[] weekdays = rule.getByDayWeekday();
+            if (weekdays.length == 0) return true;
+            int weekday = day.getDayOfWeek().getValue();
+            for (int w : weekdays) {
+                if (w == weekday) return true;
+            }
+            return false;
+        }
+
+        private boolean matchesMonthDay(LocalDate day) {
+            int[] monthDays = rule.getByMonthDay();
+            if (monthDays.length == 0) return true;
+            int length = day.lengthOfMonth();
+            for (int monthDay : monthDays) {
+                if ((monthDay > 0 ? monthDay : length + 1 + monthDay) == day.getDayOfMonth()) return true;
+            }
+            return false;
+        }
+
+        private static LocalDate mondayOf(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        private static long[] grow(long[] days, int count) {
+            return count < days.length ? days : Arrays.copyOf(days, days.length * 2);
+        }
+
+        private static long[] sortedUnique(long[] values, int count) {
+            Arrays.sort(values, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || values[i] != values[unique - 1]) {
+                    values[unique++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, unique);
         }
     }
 
-}
\ No newline at end of file
+}
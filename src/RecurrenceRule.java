@@ -1,21 +1,204 @@
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 /**
  * Blueprint for recurrence.csv
  * Does not contain calculation logic
+ *
+ * The interval text is parsed once here; RecurrenceManager only works with the parsed form.
+ * Two forms are accepted:
+ *   "2w"  - every 2 weeks (d, w, m, y), the original format
+ *   "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE,FR;EXDATE=20250106T0900"
+ *         - an iCalendar (RFC 5545) style rule with BYDAY, BYMONTHDAY, BYSETPOS and EXDATE
+ * COUNT and UNTIL stay in their own columns (recurrentTimes, recurrentEndDate).
+ * A rule without BY parts and exclusions is written back in the short form,
+ * so files with only the original rules do not change.
+ *
+ * A rule that cannot be read is rejected when it is created (IllegalArgumentException),
+ * the loaders log and skip it instead of guessing.
  */
 
 public class RecurrenceRule {
+    public enum Unit {
+        DAY('d', "DAILY", 1440, 0),
+        WEEK('w', "WEEKLY", 7 * 1440, 0),
+        MONTH('m', "MONTHLY", 0, 1),
+        YEAR('y', "YEARLY", 0, 12);
+
+        private final char code;
+        private final String freq;
+        // length of one unit: fixed minutes for days and weeks, calendar months otherwise
+        private final long minutes;
+        private final long months;
+
+        Unit(char code, String freq, long minutes, long months) {
+            this.code = code;
+            this.freq = freq;
+            this.minutes = minutes;
+            this.months = months;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        public static Unit of(char code) {
+            for (Unit unit : values()) {
+                if (unit.code == Character.toLowerCase(code)) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+
+        static Unit ofFreq(String freq) {
+            for (Unit unit : values()) {
+                if (unit.freq.equals(freq)) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    private static final DateTimeFormatter EXDATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm");
+    private static final int[] NONE = new int[0];
+
     private final int eventId; // link to base event
-    private final String recurrentInterval;  // e.g. "1d", "1w", "1m"
+    private final Unit unit;
+    private final int amount;  // e.g. 2 for "2w"
+    // BYDAY entries as weekday (1 = Monday .. 7 = Sunday) and ordinal (0 = every, -1 = last, 2 = second, ...)
+    private final int[] byDayWeekday;
+    private final int[] byDayOrdinal;
+    private final int[] byMonthDay;
+    private final int[] bySetPos;
+    // EXDATE, sorted epoch minutes (see Occurrence)
+    private final long[] exDates;
     private final int recurrentTimes;  // e.g. 3
     private final LocalDateTime recurrentEndDate;
 
 //  constructor: will be called by FileManager when loading recurrent.csv
     public RecurrenceRule(int eventId, String recurrentInterval, int recurrentTimes, LocalDateTime recurrentEndDate){
         this.eventId = eventId;
-        this.recurrentInterval = recurrentInterval;
+        String interval = recurrentInterval == null ? "" : recurrentInterval.trim();
+        if (recurrentTimes < 0) {
+            throw invalid("repeat times cannot be negative (" + recurrentTimes + ")");
+        }
         this.recurrentTimes = recurrentTimes;
         this.recurrentEndDate = recurrentEndDate;
+
+        if (interval.indexOf('=') < 0) {
+            // short form
+            this.unit = interval.isEmpty() ? null : Unit.of(interval.charAt(interval.length() - 1));
+            if (unit == null) {
+                throw invalid("unknown repeat interval '" + recurrentInterval
+                        + "', expected a number followed by d, w, m or y");
+            }
+            this.amount = parseInt(interval.substring(0, interval.length() - 1), "repeat interval '" + recurrentInterval + "'");
+            if (amount <= 0) {
+                throw invalid("repeat interval '" + recurrentInterval + "' must be at least 1");
+            }
+            this.byDayWeekday = NONE;
+            this.byDayOrdinal = NONE;
+            this.byMonthDay = NONE;
+            this.bySetPos = NONE;
+            this.exDates = new long[0];
+            return;
+        }
+
+        // RFC 5545 form
+        String text = interval.toUpperCase(Locale.ROOT);
+        if (text.startsWith("RRULE:")) {
+            text = text.substring("RRULE:".length());
+        }
+        Unit freq = null;
+        int every = 1;
+        int[] weekdays = NONE;
+        int[] ordinals = NONE;
+        int[] monthDays = NONE;
+        int[] setPos = NONE;
+        long[] excluded = new long[0];
+        for (String part : text.split(";")) {
+            if (part.isBlank()) continue;
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw invalid("rule part '" + part + "' is not NAME=VALUE");
+            }
+            String name = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+            switch (name) {
+                case "FREQ" -> {
+                    freq = Unit.ofFreq(value);
+                    if (freq == null) {
+                        throw invalid("FREQ must be DAILY, WEEKLY, MONTHLY or YEARLY, not '" + value + "'");
+                    }
+                }
+                case "INTERVAL" -> {
+                    every = parseInt(value, "INTERVAL");
+                    if (every <= 0) {
+                        throw invalid("INTERVAL must be at least 1");
+                    }
+                }
+                case "BYDAY" -> {
+                    String[] days = value.split(",");
+                    weekdays = new int[days.length];
+                    ordinals = new int[days.length];
+                    for (int i = 0; i < days.length; i++) {
+                        String day = days[i].trim();
+                        if (day.length() < 2) {
+                            throw invalid("BYDAY value '" + day + "' is not a day like MO or -1FR");
+                        }
+                        int weekday = Arrays.asList(DAY_CODES).indexOf(day.substring(day.length() - 2)) + 1;
+                        if (weekday == 0) {
+                            throw invalid("BYDAY value '" + day + "' is not a day like MO or -1FR");
+                        }
+                        String ordinal = day.substring(0, day.length() - 2);
+                        weekdays[i] = weekday;
+                        ordinals[i] = ordinal.isEmpty() ? 0 : parseInt(ordinal.replace("+", ""), "BYDAY ordinal");
+                        if (ordinal.length() > 0 && (ordinals[i] == 0 || Math.abs(ordinals[i]) > 53)) {
+                            throw invalid("BYDAY ordinal in '" + day + "' must be 1..53 or -53..-1");
+                        }
+                    }
+                }
+                case "BYMONTHDAY" -> monthDays = parseList(value, "BYMONTHDAY", 31);
+                case "BYSETPOS" -> setPos = parseList(value, "BYSETPOS", 366);
+                case "EXDATE" -> {
+                    String[] dates = value.split(",");
+                    excluded = new long[dates.length];
+                    for (int i = 0; i < dates.length; i++) {
+                        excluded[i] = Occurrence.toEpochMinute(parseExDate(dates[i].trim()));
+                    }
+                    Arrays.sort(excluded);
+                }
+                case "COUNT", "UNTIL" -> throw invalid(name + " goes in the repeat times / end date fields, not in the rule text");
+                default -> throw invalid("unsupported rule part '" + name + "'");
+            }
+        }
+        if (freq == null) {
+            throw invalid("rule '" + recurrentInterval + "' has no FREQ");
+        }
+        boolean hasOrdinal = Arrays.stream(ordinals).anyMatch(o -> o != 0);
+        if (hasOrdinal && (freq == Unit.DAY || freq == Unit.WEEK)) {
+            throw invalid("BYDAY with a number (like -1FR) needs FREQ=MONTHLY or YEARLY");
+        }
+        if (hasOrdinal && freq == Unit.MONTH && Arrays.stream(ordinals).anyMatch(o -> Math.abs(o) > 5)) {
+            throw invalid("a month has at most 5 of each weekday");
+        }
+        if (setPos.length > 0 && weekdays.length == 0 && monthDays.length == 0) {
+            throw invalid("BYSETPOS needs BYDAY or BYMONTHDAY");
+        }
+        this.unit = freq;
+        this.amount = every;
+        this.byDayWeekday = weekdays;
+        this.byDayOrdinal = ordinals;
+        this.byMonthDay = monthDays;
+        this.bySetPos = setPos;
+        this.exDates = excluded;
     }
 
 //    getters
@@ -23,8 +206,88 @@ public class RecurrenceRule {
         return eventId;
     }
 
+    // canonical text form, e.g. "2w" or "FREQ=WEEKLY;BYDAY=MO,WE,FR"
     public String getRecurrentInterval(){
-        return recurrentInterval;
+        if (isShortForm()) {
+            return amount + String.valueOf(unit.code);
+        }
+        StringBuilder text = new StringBuilder("FREQ=").append(unit.freq);
+        if (amount > 1) {
+            text.append(";INTERVAL=").append(amount);
+        }
+        if (byDayWeekday.length > 0) {
+            text.append(";BYDAY=");
+            for (int i = 0; i < byDayWeekday.length; i++) {
+                if (i > 0) text.append(',');
+                if (byDayOrdinal[i] != 0) text.append(byDayOrdinal[i]);
+                text.append(DAY_CODES[byDayWeekday[i] - 1]);
+            }
+        }
+        appendList(text, "BYMONTHDAY", byMonthDay);
+        appendList(text, "BYSETPOS", bySetPos);
+        if (exDates.length > 0) {
+            text.append(";EXDATE=");
+            for (int i = 0; i < exDates.length; i++) {
+                if (i > 0) text.append(',');
+                text.append(Occurrence.fromEpochMinute(exDates[i]).format(EXDATE_FORMAT));
+            }
+        }
+        return text.toString();
+    }
+
+    public Unit getUnit(){
+        return unit;
+    }
+
+    public int getAmount(){
+        return amount;
+    }
+
+    // length of one interval in minutes, 0 for month based units
+    public long getStepMinutes(){
+        return amount * unit.minutes;
+    }
+
+    // length of one interval in months, 0 for day based units
+    public long getStepMonths(){
+        return amount * unit.months;
+    }
+
+    // plain "every N units" without exclusions, written as "2w"
+    public boolean isShortForm(){
+        return !hasPattern() && exDates.length == 0;
+    }
+
+    // true when BYDAY / BYMONTHDAY / BYSETPOS pick the days, not just the interval
+    public boolean hasPattern(){
+        return byDayWeekday.length > 0 || byMonthDay.length > 0;
+    }
+
+    // the arrays are shared, callers must not modify them
+    int[] getByDayWeekday(){
+        return byDayWeekday;
+    }
+
+    int[] getByDayOrdinal(){
+        return byDayOrdinal;
+    }
+
+    int[] getByMonthDay(){
+        return byMonthDay;
+    }
+
+    int[] getBySetPos(){
+        return bySetPos;
+    }
+
+    // sorted EXDATE starts in epoch minutes
+    long[] getExDates(){
+        return exDates;
+    }
+
+    // EXDATE lookup, minute is an instance start in epoch minutes
+    public boolean isExcluded(long minute){
+        return exDates.length > 0 && Arrays.binarySearch(exDates, minute) >= 0;
     }
 
     public int getRecurrentTimes(){
@@ -35,13 +298,21 @@ public class RecurrenceRule {
         return recurrentEndDate;
     }
 
+    // one line of recurrent.csv, the reverse of fromCsvR()
+    public String toCsvR() {
+        String endDate = (recurrentEndDate == null)
+                ? "0" : recurrentEndDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"));
+        // RFC rules contain commas (BYDAY=MO,WE), escape() quotes them
+        return String.format("%d,%s,%d,%s", eventId, CsvScanner.escape(getRecurrentInterval()), recurrentTimes, endDate);
+    }
+
     public static RecurrenceRule fromCsvR(String line) {
     try {
-        String[] parts = line.split(",");
-        int eventId = Integer.parseInt(parts[0]);
+        String[] parts = CsvScanner.splitLine(line);
+        int eventId = Integer.parseInt(parts[0].trim());
         String interval = parts[1];
-        int times = Integer.parseInt(parts[2]);
-        
+        int times = Integer.parseInt(parts[2].trim());
+
         LocalDateTime endDate = null;
         if (parts.length > 3) {
             String raw = parts[3].trim();
@@ -51,11 +322,61 @@ public class RecurrenceRule {
         }
 
         return new RecurrenceRule(eventId, interval, times, endDate);
+    } catch (NumberFormatException e) {
+        return null; // header or broken line
+    } catch (IllegalArgumentException e) {
+        // the line was readable but the rule itself is not
+        System.err.println("Skipping invalid recurrence rule '" + line + "': " + e.getMessage());
+        return null;
     } catch (Exception e) {
         return null; // Skip lines that are broken
     }
 }
 
-}
+    private static IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException(message);
+    }
 
+    private static int parseInt(String value, String what) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalid(what + " is not a number: '" + value + "'");
+        }
+    }
 
+    // comma separated, non-zero, within -max..max
+    private static int[] parseList(String value, String name, int max) {
+        List<Integer> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            int v = parseInt(item.replace("+", ""), name);
+            if (v == 0 || Math.abs(v) > max) {
+                throw invalid(name + " values must be 1.." + max + " or -" + max + "..-1, not " + v);
+            }
+            values.add(v);
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // 20250106T0900, 20250106T090000 or 2025-01-06T09:00
+    private static LocalDateTime parseExDate(String value) {
+        try {
+            if (value.indexOf('-') > 0) {
+                return LocalDateTime.parse(value);
+            }
+            return LocalDateTime.parse(value.length() > 13 ? value.substring(0, 13) : value, EXDATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            throw invalid("EXDATE '" + value + "' is not a date-time like 20250106T0900");
+        }
+    }
+
+    private static void appendList(StringBuilder text, String name, int[] values) {
+        if (values.length == 0) return;
+        text.append(';').append(name).append('=');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) text.append(',');
+            text.append(values[i]);
+        }
+    }
+
+}
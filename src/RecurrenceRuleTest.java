@@ -0,0 +1,75 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// checks for the RFC 5545 style rules (BYDAY, BYSETPOS, EXDATE), run with: java RecurrenceRuleTest
+public class RecurrenceRuleTest {
+
+    private static final RecurrenceManager manager = new RecurrenceManager();
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+
+        // last Friday of every month
+        Event payday = event(LocalDateTime.of(2025, 1, 31, 9, 0), 60);
+        RecurrenceRule lastFriday = new RecurrenceRule(1, "FREQ=MONTHLY;BYDAY=-1FR", 0, null);
+        check("-1FR monthly", days(payday, lastFriday, LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 7, 1, 0, 0)),
+                List.of(LocalDate.of(2025, 1, 31), LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 28),
+                        LocalDate.of(2025, 4, 25), LocalDate.of(2025, 5, 30), LocalDate.of(2025, 6, 27)));
+
+        // last weekday of every month
+        RecurrenceRule lastWeekday = new RecurrenceRule(1, "FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1", 0, null);
+        check("BYSETPOS=-1 with several BYDAY", days(payday, lastWeekday, LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 7, 1, 0, 0)),
+                List.of(LocalDate.of(2025, 1, 31), LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 31),
+                        LocalDate.of(2025, 4, 30), LocalDate.of(2025, 5, 30), LocalDate.of(2025, 6, 30)));
+
+        // COUNT=3 with the second instance excluded: only two are left, the series does not grow a fourth
+        Event standup = event(LocalDateTime.of(2025, 1, 1, 9, 0), 15);
+        RecurrenceRule withExDate = new RecurrenceRule(1, "FREQ=DAILY;EXDATE=20250102T0900", 3, null);
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        check("EXDATE counts toward COUNT", days(standup, withExDate, from, to),
+                List.of(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 3)));
+        check("EXDATE counts toward COUNT (countOccurrences)", manager.countOccurrences(standup, withExDate, from, to), 2L);
+
+        // a window ten years after the base start, the cursor has to seek instead of walking there
+        Event gym = event(LocalDateTime.of(2025, 1, 6, 18, 0), 90);
+        RecurrenceRule gymDays = new RecurrenceRule(1, "FREQ=WEEKLY;BYDAY=MO,WE,FR", 0, null);
+        check("seek into a far window", days(gym, gymDays, LocalDateTime.of(2035, 3, 5, 0, 0), LocalDateTime.of(2035, 3, 12, 0, 0)),
+                List.of(LocalDate.of(2035, 3, 5), LocalDate.of(2035, 3, 7), LocalDate.of(2035, 3, 9)));
+
+        // instances of almost three weeks on a weekly rule: ones that started two periods before the window still overlap it
+        Event trip = event(LocalDateTime.of(2025, 1, 6, 8, 0), 20 * 1440);
+        RecurrenceRule mondays = new RecurrenceRule(1, "FREQ=WEEKLY;BYDAY=MO", 0, null);
+        check("seek with instances longer than a period", days(trip, mondays, LocalDateTime.of(2030, 6, 12, 0, 0), LocalDateTime.of(2030, 6, 13, 0, 0)),
+                List.of(LocalDate.of(2030, 5, 27), LocalDate.of(2030, 6, 3), LocalDate.of(2030, 6, 10)));
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed.");
+            System.exit(1);
+        }
+        System.out.println("All recurrence checks passed.");
+    }
+
+    private static Event event(LocalDateTime start, long minutes) {
+        return new Event(1, "Test", "", start, start.plusMinutes(minutes), "", "General", "");
+    }
+
+    private static List<LocalDate> days(Event base, RecurrenceRule rule, LocalDateTime from, LocalDateTime to) {
+        List<LocalDate> days = new ArrayList<>();
+        for (Occurrence o : manager.generateOccurrences(base, rule, from, to)) {
+            days.add(o.getStartDateTime().toLocalDate());
+        }
+        return days;
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        if (actual.equals(expected)) {
+            System.out.println("PASS " + name);
+        } else {
+            failures++;
+            System.out.println("FAIL " + name + ": expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ReminderManager {
     private static final String REMINDER_FILE = "data/reminder.csv"; // Ensure correct path
     private static final String HEADER = "eventId, minutesBefore";
 
+    // shared by every instance: read once, changed in memory, written in the background
+    private static List<Reminder> cache;
+
     public ReminderManager() {
         // Ensure file exists
         File file = new File(REMINDER_FILE);
@@ -23,43 +29,66 @@ public class ReminderManager {
         }
     }
 
+    private static synchronized List<Reminder> reminders() {
+        if (cache == null) {
+            cache = ReminderFileReader.loadReminders(REMINDER_FILE);
+        }
+        return cache;
+    }
+
     public void saveReminder(int eventId, int minutesBefore) {
         if (minutesBefore <= 0) return; // Don't save if "None" selected
 
-        List<Reminder> reminders = ReminderFileReader.loadReminders(REMINDER_FILE);
-        
-        // Remove existing reminder for this event if it exists (update logic)
-        reminders.removeIf(r -> r.getEventId() == eventId);
-        
-        // Add new reminder
-        reminders.add(new Reminder(eventId, minutesBefore));
+        synchronized (ReminderManager.class) {
+            List<Reminder> reminders = reminders();
+
+            // Remove existing reminder for this event if it exists (update logic)
+            reminders.removeIf(r -> r.getEventId() == eventId);
 
-        saveAll(reminders);
+            // Add new reminder
+            reminders.add(new Reminder(eventId, minutesBefore));
+
+            scheduleSave(reminders);
+        }
     }
     
     // Used when deleting an event
     public void deleteReminder(int eventId) {
-        List<Reminder> reminders = ReminderFileReader.loadReminders(REMINDER_FILE);
-        boolean removed = reminders.removeIf(r -> r.getEventId() == eventId);
-        if (removed) {
-            saveAll(reminders);
+        synchronized (ReminderManager.class) {
+            List<Reminder> reminders = reminders();
+            boolean removed = reminders.removeIf(r -> r.getEventId() == eventId);
+            if (removed) {
+                scheduleSave(reminders);
+            }
         }
     }
 
-    private void saveAll(List<Reminder> reminders) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(REMINDER_FILE))) {
-            pw.println(HEADER);
-            for (Reminder r : reminders) {
-                pw.println(r.getEventId() + "," + r.getRemindBeforeMinutes());
-            }
-        } catch (IOException e) {
-            System.out.println("Error saving reminders: " + e.getMessage());
+    // copy of the current list for the scheduler and the dialogs
+    public List<Reminder> getReminders() {
+        synchronized (ReminderManager.class) {
+            return new ArrayList<>(reminders());
+        }
+    }
+
+    private static void scheduleSave(List<Reminder> reminders) {
+        List<Reminder> copy = new ArrayList<>(reminders);
+        // only the latest state of the file matters, older queued saves are replaced
+        PersistenceService.shared().submit("reminders", () -> saveAll(copy));
+    }
+
+    private static void saveAll(List<Reminder> reminders) {
+        StringBuilder csv = new StringBuilder(HEADER).append(System.lineSeparator());
+        for (Reminder r : reminders) {
+            csv.append(r.getEventId()).append(",").append(r.getRemindBeforeMinutes()).append(System.lineSeparator());
+        }
+        // temp file + fsync + rename, grouped with other saves arriving at the same time
+        if (!GroupCommitWriter.shared().commit(Map.of(Paths.get(REMINDER_FILE), csv.toString()))) {
+            System.out.println("Error saving reminders, previous version kept.");
         }
     }
     
     public int getReminderMinutes(int eventId) {
-        List<Reminder> reminders = ReminderFileReader.loadReminders(REMINDER_FILE);
-        for (Reminder r : reminders) {
+        for (Reminder r : getReminders()) {
             if (r.getEventId() == eventId) {
                 return r.getRemindBeforeMinutes();
             }
@@ -6,24 +6,24 @@ import java.util.List;
 public class ReminderService {
 
     public static class ReminderNotification {
-        private Event event;
+        private Occurrence event;
         private String message;
 
-        public ReminderNotification(Event event, String message) {
+        public ReminderNotification(Occurrence event, String message) {
             this.event = event;
             this.message = message;
         }
 
-        public Event getEvent() { return event; }
+        public Occurrence getEvent() { return event; }
         public String getMessage() { return message; }
     }
 
     // Returns a list of reminder objects instead of showing an alert directly
-    public static List<ReminderNotification> getReminders(List<Event> events, List<Reminder> reminders) {
+    public static List<ReminderNotification> getReminders(List<Occurrence> events, List<Reminder> reminders) {
         LocalDateTime now = LocalDateTime.now();
         List<ReminderNotification> notifications = new ArrayList<>();
 
-        for (Event event : events) {
+        for (Occurrence event : events) {
             for (Reminder reminder : reminders) {
 
                 if (event.getEventId() == reminder.getEventId()) {
@@ -59,7 +59,7 @@ public class ReminderService {
     
     // Deprecated: kept to avoid immediate compilation errors if called elsewhere, 
     // but CalendarGUI will be updated to use getReminders.
-    public static void checkReminders(List<Event> events, List<Reminder> reminders) {
+    public static void checkReminders(List<Occurrence> events, List<Reminder> reminders) {
         // This will be replaced in GUI by getReminders + History Log
     }
 }
\ No newline at end of file
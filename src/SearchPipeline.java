@@ -0,0 +1,76 @@
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Search-as-you-type off the FX thread.
+ *
+ * submit() waits DEBOUNCE_MILLIS for more input, then runs the query on one background
+ * thread and hands the result to the FX thread with Platform.runLater. Every submit
+ * supersedes the previous one: a query still waiting is dropped, a running one sees
+ * its BooleanSupplier turn true and can stop early, and a late result is thrown away
+ * instead of overwriting a newer one.
+ *
+ * submit() and cancel() are called on the FX thread.
+ */
+public class SearchPipeline<T> {
+    static final long DEBOUNCE_MILLIS = 150;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // number of the newest request, older ones are superseded
+    private final AtomicLong latest = new AtomicLong();
+    private ScheduledFuture<?> pending;
+
+    /**
+     * @param query runs on the background thread; its argument says whether the query was
+     *              superseded in the meantime, it may then return null
+     * @param apply runs on the FX thread, only if no newer request came in
+     */
+    public void submit(Function<BooleanSupplier, T> query, Consumer<T> apply) {
+        long ticket = cancel();
+        BooleanSupplier superseded = () -> latest.get() != ticket;
+        pending = executor.schedule(() -> {
+            if (superseded.getAsBoolean()) return;
+            try {
+                T result = query.apply(superseded);
+                if (result == null || superseded.getAsBoolean()) return;
+                Platform.runLater(() -> {
+                    if (!superseded.getAsBoolean()) {
+                        apply.accept(result);
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Search failed: " + e.getMessage());
+            }
+        }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the pending request, e.g. when the view was redrawn synchronously.
+     * @return the number of the next request
+     */
+    public long cancel() {
+        long ticket = latest.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        return ticket;
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -1,7 +1,9 @@
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
@@ -10,12 +12,20 @@ import javafx.scene.control.TableView;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.function.Function;
 
 public class SearchScene {
     private final EventSearcher searcher;
     private final CalendarGUI calendarGUI;
-    private TableView<Event> resultsTable;
+    private TableView<Occurrence> resultsTable;
+
+    // rows are fetched a page at a time, the next page when the user scrolls near the end
+    private static final int PAGE_SIZE = 200;
+    private static final int PREFETCH_ROWS = 20;
+    private EventSearcher.Page lastPage;
+    // repeats the current search for the page after 'lastPage'
+    private Function<EventSearcher.Page, EventSearcher.Page> nextPage;
+    private boolean loading;
 
 
     public SearchScene(EventSearcher searcher, CalendarGUI calendarGUI){
@@ -79,25 +89,21 @@ public class SearchScene {
         resultsTable = new TableView<>();
 
         // <dtype row, dtype col>
-        TableColumn<Event, String> dateStartCol = new TableColumn<>("Starting Date");
-        /* PropertyValueFactory
-         1. takes String input eg. title
-         2. capitalize first char -> Title
-         3. look inside class Event for getTitle() method and apply it
-        */
-        dateStartCol.setCellValueFactory(new PropertyValueFactory<>("startDateTime"));
-
-        TableColumn<Event, String> dateEndCol = new TableColumn<>("Ending Date");
-        dateEndCol.setCellValueFactory(new PropertyValueFactory<>("endDateTime"));
-
-        TableColumn<Event, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
-        TableColumn<Event, String> catCol = new TableColumn<>("Category");
-        catCol.setCellValueFactory(new PropertyValueFactory<>("category"));
-        TableColumn<Event, String> locationCol = new TableColumn<>("Location");
-        locationCol.setCellValueFactory(new PropertyValueFactory<>("location"));
-        TableColumn<Event, String> attendeesCol = new TableColumn<>("Attendees");
-        attendeesCol.setCellValueFactory(new PropertyValueFactory<>("attendees"));
+        // the getters are called directly, no reflection per cell
+        TableColumn<Occurrence, LocalDateTime> dateStartCol = new TableColumn<>("Starting Date");
+        dateStartCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getStartDateTime()));
+
+        TableColumn<Occurrence, LocalDateTime> dateEndCol = new TableColumn<>("Ending Date");
+        dateEndCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getEndDateTime()));
+
+        TableColumn<Occurrence, String> titleCol = new TableColumn<>("Title");
+        titleCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getTitle()));
+        TableColumn<Occurrence, String> catCol = new TableColumn<>("Category");
+        catCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getCategory()));
+        TableColumn<Occurrence, String> locationCol = new TableColumn<>("Location");
+        locationCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getLocation()));
+        TableColumn<Occurrence, String> attendeesCol = new TableColumn<>("Attendees");
+        attendeesCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getAttendees()));
 
         //noinspection unchecked
         resultsTable.getColumns().addAll(dateStartCol, dateEndCol, titleCol, catCol, locationCol, attendeesCol);
@@ -105,10 +111,20 @@ public class SearchScene {
 
         // interaction: double click to edit/delete
         resultsTable.setRowFactory(tv -> {
-            TableRow<Event> row = new TableRow<>();
+            TableRow<Occurrence> row = new TableRow<>() {
+                @Override
+                protected void updateItem(Occurrence item, boolean empty) {
+                    super.updateItem(item, empty);
+                    // only rows on screen are updated, so this fires when the end comes into view
+                    if (!empty && getIndex() >= getTableView().getItems().size() - PREFETCH_ROWS) {
+                        // not while the table lays out its rows
+                        Platform.runLater(SearchScene.this::loadNextPage);
+                    }
+                }
+            };
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && (!row.isEmpty())){
-                    Event rowData = row.getItem();
+                    Occurrence rowData = row.getItem();
                     calendarGUI.handleEventInteraction(rowData);
                 }
             });
@@ -120,18 +136,16 @@ public class SearchScene {
             LocalDateTime start = startDate.getValue().atStartOfDay();
             LocalDateTime end = endDate.getValue().atTime(23,59);
 
-            List<Event> basicResult = searcher.searchByDateRange(start, end);
+            String keyword = keywordField.getText();
+            String category = categoryBox.getValue();
+            String location = locationField.getText();
+            String attendees = attendeesField.getText();
+            nextPage = after -> searcher.searchPage(start, end, keyword, category, location, attendees, after, PAGE_SIZE);
 
-            List<Event> finalResults = searcher.advanceFilter(
-                    basicResult,
-                    keywordField.getText(),
-                    categoryBox.getValue(),
-                    locationField.getText(),
-                    attendeesField.getText()
-            );
             // getItems returns an ObservableList, setAll on that list replace all its elements
-
-            resultsTable.getItems().setAll(finalResults);
+            lastPage = nextPage.apply(null);
+            resultsTable.getItems().setAll(lastPage.getItems());
+            resultsTable.scrollTo(0);
         });
 
         mainLayout.getChildren().addAll(new Label("Search Criteria"),
@@ -143,4 +157,18 @@ public class SearchScene {
 
     }
 
+    // appends the page after the rows loaded so far
+    private void loadNextPage() {
+        if (loading || lastPage == null || !lastPage.hasMore()) {
+            return;
+        }
+        loading = true;
+        try {
+            lastPage = nextPage.apply(lastPage);
+            resultsTable.getItems().addAll(lastPage.getItems());
+        } finally {
+            loading = false;
+        }
+    }
+
 }
@@ -0,0 +1,228 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary copy of one store segment for a fast cold start.
+ *
+ * Written on clean shutdown for every segment read in the session and used
+ * instead of parsing the segment CSV, as long as it is newer than it. Rewriting
+ * a segment deletes its copy, CSV stays the source of truth and the export format.
+ *
+ * Layout (big endian):
+ *   header      int MAGIC, short VERSION, int ruleCount, int eventCount
+ *   dictionary  int size, then size x text      (category and location values)
+ *   rules       eventId, text interval, int times, long endMinute (Long.MIN_VALUE = none)
+ *   events      eventId, text title, text description, long startMinute,
+ *               int durationMinutes, int categoryRef, int locationRef, text attendees
+ * where text = int byteLength (-1 = null) + UTF-8 bytes and
+ * minutes are epoch minutes of the local date-time.
+ */
+public class SnapshotStore {
+    private static final int MAGIC = 0x48493543; // "HI5C"
+    private static final short VERSION = 1;
+
+    private final Path path;
+
+    public SnapshotStore(String filePath) {
+        this.path = Paths.get(filePath);
+    }
+
+    /**
+     * @return true if the snapshot exists and was written after every given file changed
+     */
+    public boolean isNewerThan(String... filePaths) {
+        File snapshot = path.toFile();
+        if (!snapshot.exists()) {
+            return false;
+        }
+        long written = snapshot.lastModified();
+        for (String filePath : filePaths) {
+            if (new File(filePath).lastModified() >= written) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // called on every write, the snapshot would be stale otherwise
+    public void discard() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Unable to delete snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the data cannot be stored losslessly (seconds in a timestamp)
+     */
+    public boolean write(CalendarData data) {
+        for (Event e : data.getEvents()) {
+            if (!onMinute(e.getStartDateTime()) || !onMinute(e.getEndDateTime())) {
+                System.out.println("Snapshot skipped: event " + e.getEventId() + " is not minute aligned.");
+                discard();
+                return false;
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + data.getEvents().size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(data.getRules().size());
+            out.writeInt(data.getEvents().size());
+
+            // dictionary of the low-cardinality columns
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (Event e : data.getEvents()) {
+                dictionary.putIfAbsent(e.getCategory(), dictionary.size());
+                dictionary.putIfAbsent(e.getLocation(), dictionary.size());
+            }
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeText(out, value);
+            }
+
+            for (RecurrenceRule rule : data.getRules().values()) {
+                out.writeInt(rule.getEventId());
+                writeText(out, rule.getRecurrentInterval());
+                out.writeInt(rule.getRecurrentTimes());
+                out.writeLong(rule.getRecurrentEndDate() == null ? Long.MIN_VALUE : toEpochMinute(rule.getRecurrentEndDate()));
+            }
+
+            for (Event e : data.getEvents()) {
+                long start = toEpochMinute(e.getStartDateTime());
+                out.writeInt(e.getEventId());
+                writeText(out, e.getTitle());
+                writeText(out, e.getDescription());
+                out.writeLong(start);
+                out.writeInt((int) (toEpochMinute(e.getEndDateTime()) - start));
+                out.writeInt(dictionary.get(e.getCategory()));
+                out.writeInt(dictionary.get(e.getLocation()));
+                writeText(out, e.getAttendees());
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to encode snapshot: " + e.getMessage());
+            return false;
+        }
+
+        // write next to it and swap, a crash never leaves a half-written snapshot behind
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unable to write snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return the stored calendar, or null if the snapshot is missing or unreadable
+     */
+    public CalendarData read() {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = ByteBuffer.allocate((int) channel.size());
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // keep reading until the buffer is full
+            }
+            in.flip();
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+                System.out.println("Snapshot has an unknown format, ignoring it.");
+                return null;
+            }
+            int ruleCount = in.getInt();
+            int eventCount = in.getInt();
+
+            String[] dictionary = new String[in.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readText(in);
+            }
+
+            Map<Integer, RecurrenceRule> rules = new HashMap<>();
+            for (int i = 0; i < ruleCount; i++) {
+                int eventId = in.getInt();
+                String interval = readText(in);
+                int times = in.getInt();
+                long endMinute = in.getLong();
+                rules.put(eventId, new RecurrenceRule(eventId, interval, times,
+                        endMinute == Long.MIN_VALUE ? null : fromEpochMinute(endMinute)));
+            }
+
+            List<Event> events = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                int eventId = in.getInt();
+                String title = readText(in);
+                String description = readText(in);
+                long start = in.getLong();
+                int duration = in.getInt();
+                String category = dictionary[in.getInt()];
+                String location = dictionary[in.getInt()];
+                String attendees = readText(in);
+                events.add(new Event(eventId, title, description, fromEpochMinute(start),
+                        fromEpochMinute(start + duration), location, category, attendees));
+            }
+            return new CalendarData(events, rules);
+        } catch (RuntimeException e) {
+            // truncated or corrupted file: fall back to the CSV files
+            System.err.println("Snapshot is corrupted, ignoring it: " + e);
+            return null;
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readText(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static boolean onMinute(LocalDateTime time) {
+        return time.getSecond() == 0 && time.getNano() == 0;
+    }
+
+    private static long toEpochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static LocalDateTime fromEpochMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+}
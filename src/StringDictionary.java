@@ -0,0 +1,65 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning dictionary for the category of events.
+ *
+ * Every distinct value is stored once and referenced by a small int id, so
+ * half a million events with a handful of categories hold a handful of
+ * Strings instead of half a million. Ids are never reused or removed; the
+ * dictionary is shared by every load (and every occurrence copy) for the
+ * lifetime of the app. That is only affordable for a small, fixed vocabulary:
+ * free text such as locations or attendee names must not go in here, every
+ * value ever typed or loaded would stay in memory.
+ *
+ * Thread-safe: the parallel CSV loader adds values from several threads.
+ * Lookups by id take no lock.
+ */
+public final class StringDictionary {
+    // id of a null value
+    public static final int NULL_ID = -1;
+
+    private static final StringDictionary SHARED = new StringDictionary();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // written under the lock, republished through the volatile field after every add
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public static StringDictionary shared() {
+        return SHARED;
+    }
+
+    public int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            // publish the array before the id becomes visible through the map
+            values = current;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    public String valueOf(int id) {
+        return id == NULL_ID ? null : values[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over the searchable text of events (title, description, location,
+ * category, attendees), lowercased like EventSearcher.advanceFilter() does.
+ *
+ * Two posting maps point to eventIds:
+ *   trigrams  every 3-character substring, a keyword of 3+ characters can only be
+ *             inside events that have all of its trigrams
+ *   words     every run of non-blank characters, sorted, for prefix lookups and for
+ *             keywords shorter than 3 characters (such a keyword without a blank is
+ *             a substring of the text exactly when it is a substring of one word)
+ *
+ * Answers are candidate sets: every matching event is in them, the caller still checks
+ * the text of each candidate. That is what keeps updates cheap: add() only ever adds
+ * postings, an edited event keeps its old ones until the next rebuild, which is
+ * harmless because its new text is checked anyway.
+ *
+ * Month segments are indexed once they have been read (addSegments()), so the index
+ * never loads a month on its own; the events a search filters always come from
+ * months that search has read.
+ *
+ * Thread-safe, the lock is held for one lookup or one event.
+ */
+public final class TextIndex {
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    // identifies the data the index was built from, see EventRepository.textIndex()
+    private final Object source;
+    // keys of the segments whose events were added
+    private final Set<String> indexedSegments = new HashSet<>();
+
+    // sorted eventIds; ids mostly arrive in increasing order, so adding is usually an append
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            int at = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void addTo(BitSet out) {
+            for (int i = 0; i < size; i++) {
+                out.set(ids[i]);
+            }
+        }
+    }
+
+    TextIndex(Object source) {
+        this.source = source;
+    }
+
+    boolean isFor(Object data) {
+        return source == data;
+    }
+
+    // adds the events of every segment not indexed yet
+    public synchronized void addSegments(Map<String, CalendarData> segments) {
+        if (segments.size() == indexedSegments.size()) {
+            return; // segments are only ever added to the cache
+        }
+        for (Map.Entry<String, CalendarData> segment : segments.entrySet()) {
+            if (indexedSegments.add(segment.getKey())) {
+                for (Event e : segment.getValue().getEvents()) {
+                    add(e);
+                }
+            }
+        }
+    }
+
+    // indexes (more) text of an event; a replaced instance adds its own text under the series id
+    public synchronized void add(Event event) {
+        String text = searchableText(event);
+        int id = event.getEventId();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.computeIfAbsent(trigram(text, i), k -> new Postings()).add(id);
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean blank = i == text.length() || Character.isWhitespace(text.charAt(i));
+            if (!blank && start < 0) {
+                start = i;
+            } else if (blank && start >= 0) {
+                words.computeIfAbsent(text.substring(start, i), k -> new Postings()).add(id);
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * @param keyword lowercased, trimmed
+     * @return ids of every event whose text may contain keyword, null if the index
+     *         cannot narrow it down (empty keyword, or a short one with a blank in it)
+     */
+    public synchronized BitSet candidates(String keyword) {
+        if (keyword.isEmpty()) {
+            return null;
+        }
+        if (keyword.length() < 3) {
+            for (int i = 0; i < keyword.length(); i++) {
+                if (Character.isWhitespace(keyword.charAt(i))) {
+                    return null;
+                }
+            }
+            // the vocabulary is much smaller than the events
+            BitSet found = new BitSet();
+            for (Map.Entry<String, Postings> word : words.entrySet()) {
+                if (word.getKey().contains(keyword)) {
+                    word.getValue().addTo(found);
+                }
+            }
+            return found;
+        }
+        // intersect, rarest trigram first so the set shrinks as early as possible
+        Postings[] lists = new Postings[keyword.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = trigrams.get(trigram(keyword, i));
+            if (lists[i] == null) {
+                return new BitSet();
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        BitSet found = new BitSet();
+        lists[0].addTo(found);
+        for (int i = 1; i < lists.length && !found.isEmpty(); i++) {
+            BitSet next = new BitSet();
+            lists[i].addTo(next);
+            found.and(next);
+        }
+        return found;
+    }
+
+    /**
+     * @param prefix lowercased
+     * @return ids of every event that has a word starting with prefix
+     */
+    public synchronized BitSet withWordPrefix(String prefix) {
+        BitSet found = new BitSet();
+        SortedMap<String, Postings> range = prefix.isEmpty() ? words : words.subMap(prefix, prefix + Character.MAX_VALUE);
+        for (Postings postings : range.values()) {
+            postings.addTo(found);
+        }
+        return found;
+    }
+
+    // the fields advanceFilter() looks at, one per line so a match never has to span two of them
+    static String searchableText(Event event) {
+        return String.join("\n", String.valueOf(event.getTitle()), String.valueOf(event.getDescription()),
+                String.valueOf(event.getCategory()), String.valueOf(event.getLocation()),
+                String.valueOf(event.getAttendees())).toLowerCase();
+    }
+
+    private static long trigram(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+}